@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.dto.validation.jmh_generated;
+public class DisplayStringBenchmark_jmhType extends DisplayStringBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.presistence.model.jmh_generated;
+public class EntityMarkerBenchmark_jmhType extends EntityMarkerBenchmark_jmhType_B3 {
+}
+
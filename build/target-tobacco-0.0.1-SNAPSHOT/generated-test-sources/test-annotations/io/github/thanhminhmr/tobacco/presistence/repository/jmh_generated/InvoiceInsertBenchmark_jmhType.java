@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.presistence.repository.jmh_generated;
+public class InvoiceInsertBenchmark_jmhType extends InvoiceInsertBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.presistence.repository.jmh_generated;
+public class MixedWorkloadBenchmark_jmhType extends MixedWorkloadBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.web.rest.jmh_generated;
+public class InvoiceAuthorizationBenchmark_jmhType extends InvoiceAuthorizationBenchmark_jmhType_B3 {
+}
+
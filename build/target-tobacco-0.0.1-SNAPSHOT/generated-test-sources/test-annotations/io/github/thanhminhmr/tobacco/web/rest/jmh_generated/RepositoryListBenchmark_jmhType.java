@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.web.rest.jmh_generated;
+public class RepositoryListBenchmark_jmhType extends RepositoryListBenchmark_jmhType_B3 {
+}
+
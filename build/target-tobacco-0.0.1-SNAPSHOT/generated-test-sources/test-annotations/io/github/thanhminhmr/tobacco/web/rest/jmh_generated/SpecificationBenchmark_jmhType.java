@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.web.rest.jmh_generated;
+public class SpecificationBenchmark_jmhType extends SpecificationBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.web.rest.jmh_generated;
+public class ThreadModeBenchmark_jmhType extends ThreadModeBenchmark_jmhType_B3 {
+}
+
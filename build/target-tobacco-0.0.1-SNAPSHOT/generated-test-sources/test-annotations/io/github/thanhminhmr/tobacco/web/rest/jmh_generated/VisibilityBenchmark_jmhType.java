@@ -0,0 +1,4 @@
+package io.github.thanhminhmr.tobacco.web.rest.jmh_generated;
+public class VisibilityBenchmark_jmhType extends VisibilityBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco;
+
+import io.github.thanhminhmr.tobacco.presistence.model.*;
+import io.github.thanhminhmr.tobacco.presistence.repository.GroupRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.ProductRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.UserRepository;
+import io.github.thanhminhmr.tobacco.security.SaleManagerVisibilityIndex;
+import jakarta.annotation.Nonnull;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * The application, started once per benchmark fork against a pre-seeded SQLite file. The file is given by the
+ * {@code tobacco.benchmark.database} system property and is seeded on first use only, so that every run measures the
+ * same data. The number of invoices is given by the {@code tobacco.benchmark.invoices} system property, a file with
+ * another number of invoices needs another name.
+ * <p>
+ * Benchmarks sit in the package of the code they measure, so that they can reach the parts of the controllers that
+ * are package-private rather than private for them, such as the list specifications, without making them public.
+ */
+public final class BenchmarkContext {
+	public static final int SALESMEN = 50;
+	public static final int PRODUCTS = 10_000;
+	private static final int CHUNK_SIZE = 1000;
+
+	private static ConfigurableApplicationContext context;
+
+	private BenchmarkContext() {
+	}
+
+	public static @Nonnull ConfigurableApplicationContext get() {
+		return get(new Class<?>[0]);
+	}
+
+	/**
+	 * @param sources Additional configurations, only used if this is the first call in the fork.
+	 * @return The application.
+	 */
+	public static synchronized @Nonnull ConfigurableApplicationContext get(@Nonnull Class<?>... sources) {
+		if (context == null) {
+			final String database = System.getProperty("tobacco.benchmark.database", "build/benchmark.sqlite");
+			// command line arguments win over application.properties
+			context = new SpringApplicationBuilder(TobaccoApplication.class).sources(sources).run(
+					"--spring.datasource.url=jdbc:sqlite:" + database,
+					"--server.port=0",
+					"--logging.level.org.springframework=WARN",
+					"--logging.level.org.hibernate.SQL=WARN",
+					"--spring.jpa.properties.hibernate.generate_statistics=false"
+			);
+			seed(context);
+		}
+		return context;
+	}
+
+	public static @Nonnull User saleManager() {
+		return Objects.requireNonNull(get().getBean(UserRepository.class).findByUsername("benchmarkSaleManager"));
+	}
+
+	// every chunk is saved in its own transaction, so that the persistence context does not keep growing
+	private static void seed(@Nonnull ConfigurableApplicationContext context) {
+		final UserRepository userRepository = context.getBean(UserRepository.class);
+		if (userRepository.existsByUsername("benchmarkSaleManager")) return;
+
+		final TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+		final String password = context.getBean(PasswordEncoder.class).encode("password");
+		final SplittableRandom random = new SplittableRandom(42);
+
+		final List<User> salesmen = new ArrayList<>();
+		final Set<User> members = new HashSet<>();
+		transactionTemplate.executeWithoutResult(status -> {
+			members.add(userRepository.save(newUser("benchmarkSaleManager", password, Authority.USER_SALE_MANAGER)));
+			for (int index = 0; index < SALESMEN; index++) {
+				final User salesman = userRepository.save(
+						newUser("benchmarkSalesman" + index, password, Authority.USER_SALESMAN));
+				salesmen.add(salesman);
+				// the sale manager shares a group with half of the salesmen
+				if (index % 2 == 0) members.add(salesman);
+			}
+			context.getBean(GroupRepository.class).save(new Group()
+					.setDisplayName("Benchmark Group")
+					.setUsers(members)
+					.setDeleted(false));
+		});
+
+		final ProductRepository productRepository = context.getBean(ProductRepository.class);
+		final List<Long> productIds = new ArrayList<>();
+		for (int chunk = 0; chunk < PRODUCTS; chunk += CHUNK_SIZE) {
+			final int first = chunk;
+			transactionTemplate.executeWithoutResult(status -> {
+				final List<Product> products = new ArrayList<>();
+				for (int index = first; index < first + CHUNK_SIZE; index++) {
+					products.add(new Product()
+							.setDisplayName("Product " + index)
+							.setDisplayDescription("Benchmark product number " + index)
+							.setDisplayUnit("unit")
+							.setCurrentPrice(random.nextLong(1, 1_000_000))
+							.setDeleted(false));
+				}
+				for (final Product product : productRepository.saveAll(products)) productIds.add(product.getId());
+			});
+		}
+
+		final InvoiceRepository invoiceRepository = context.getBean(InvoiceRepository.class);
+		final int invoiceCount = Integer.getInteger("tobacco.benchmark.invoices", 50_000);
+		for (int chunk = 0; chunk < invoiceCount; chunk += CHUNK_SIZE) {
+			final int first = chunk;
+			transactionTemplate.executeWithoutResult(status -> {
+				final List<Invoice> invoices = new ArrayList<>();
+				for (int index = first; index < first + CHUNK_SIZE; index++) {
+					final Product product = productRepository.getReferenceById(
+							productIds.get(random.nextInt(productIds.size())));
+					final long quantity = random.nextLong(1, 100);
+					final long unitPrice = random.nextLong(1, 1_000_000);
+					final Invoice invoice = new Invoice()
+							.setAuthor(salesmen.get(random.nextInt(salesmen.size())))
+							.setDisplayDescription("Benchmark invoice number " + index)
+							.setStatus(InvoiceStatus.values()[random.nextInt(InvoiceStatus.values().length)])
+							.setItemCount(1L)
+							.setTotalAmount(quantity * unitPrice)
+							.setDeleted(false);
+					invoice.setItems(List.of(new InvoiceItem()
+							.setInvoice(invoice)
+							.setProduct(product)
+							.setQuantity(quantity)
+							.setUnitPrice(unitPrice)
+							.setDeleted(false)));
+					invoices.add(invoice);
+				}
+				invoiceRepository.saveAll(invoices);
+			});
+		}
+
+		// the index was loaded before the group existed
+		context.getBean(SaleManagerVisibilityIndex.class).reload();
+	}
+
+	private static @Nonnull User newUser(@Nonnull String username, @Nonnull String password,
+			@Nonnull Authority authority) {
+		return new User()
+				.setUsername(username)
+				.setPassword(password)
+				.setDisplayName(username)
+				.setAuthorities(Set.of(authority))
+				.setDeleted(false);
+	}
+}
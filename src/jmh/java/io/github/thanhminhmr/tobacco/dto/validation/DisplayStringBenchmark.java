@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.dto.validation;
+
+import io.github.thanhminhmr.tobacco.web.rest.ProductsController;
+import jakarta.annotation.Nonnull;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating a request body made of {@link DisplayString} fields, once valid and once with a blank field.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisplayStringBenchmark {
+	private ValidatorFactory validatorFactory;
+	private Validator validator;
+	private ProductsController.ProductCreateDto valid;
+	private ProductsController.ProductCreateDto blank;
+
+	@Setup
+	public void setup() {
+		validatorFactory = Validation.buildDefaultValidatorFactory();
+		validator = validatorFactory.getValidator();
+		valid = new ProductsController.ProductCreateDto("Product One",
+				"The product that has a giant number one, and a rather long description to go with it.", "ONE",
+				10000L);
+		blank = new ProductsController.ProductCreateDto("Product One", "   ", "ONE", 10000L);
+	}
+
+	@TearDown
+	public void tearDown() {
+		validatorFactory.close();
+	}
+
+	@Benchmark
+	public @Nonnull Set<ConstraintViolation<ProductsController.ProductCreateDto>> validateValid() {
+		return validator.validate(valid);
+	}
+
+	@Benchmark
+	public @Nonnull Set<ConstraintViolation<ProductsController.ProductCreateDto>> validateBlank() {
+		return validator.validate(blank);
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.model;
+
+import io.github.thanhminhmr.tobacco.dto.model.InvoiceDto;
+import io.github.thanhminhmr.tobacco.dto.rest.PageDto;
+import jakarta.annotation.Nonnull;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a page of invoices, each with its author, to DTOs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityMarkerBenchmark {
+	@Param({"20", "100"})
+	private int pageSize;
+
+	private List<Invoice> invoices;
+	private PageImpl<Invoice> page;
+
+	@Setup
+	public void setup() {
+		final Instant now = Instant.now();
+		invoices = new ArrayList<>(pageSize);
+		for (int index = 0; index < pageSize; index++) {
+			final User author = new User()
+					.setId((long) index % 10)
+					.setUsername("salesman" + index % 10)
+					.setDisplayName("Salesman " + index % 10)
+					.setAuthorities(Set.of(Authority.USER_SALESMAN))
+					.setDeleted(false)
+					.setCreatedAt(now)
+					.setUpdatedAt(now);
+			invoices.add(new Invoice()
+					.setId((long) index)
+					.setAuthor(author)
+					.setDisplayDescription("Invoice number " + index)
+					.setStatus(InvoiceStatus.CREATED)
+					.setItemCount(1L)
+					.setTotalAmount(10000L)
+					.setDeleted(false)
+					.setCreatedAt(now)
+					.setUpdatedAt(now));
+		}
+		page = new PageImpl<>(invoices, PageRequest.of(0, pageSize), 10_000);
+	}
+
+	@Benchmark
+	public @Nonnull List<InvoiceDto> toDtos() {
+		return EntityMarker.toDtos(invoices);
+	}
+
+	@Benchmark
+	public @Nonnull PageDto<InvoiceDto> toPageDto() {
+		return EntityMarker.toPageDto(page);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.repository;
+
+import io.github.thanhminhmr.tobacco.BenchmarkContext;
+import io.github.thanhminhmr.tobacco.presistence.model.Invoice;
+import io.github.thanhminhmr.tobacco.presistence.model.InvoiceItem;
+import io.github.thanhminhmr.tobacco.presistence.model.InvoiceStatus;
+import io.github.thanhminhmr.tobacco.presistence.model.Product;
+import io.github.thanhminhmr.tobacco.presistence.model.User;
+import io.github.thanhminhmr.tobacco.presistence.statement.SqlStatementCounter;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert an invoice with 200 items, with JDBC batching ({@code hibernate.jdbc.batch_size}) and without it. The
+ * number of SQL statements prepared per invoice is printed after every iteration: a batch is prepared once, so the
+ * batched inserts show up as a handful of statements instead of one per item. Each insert is rolled back, so that
+ * the database does not grow, which also means that every invoice reserves new blocks of ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceInsertBenchmark {
+	private static final int ITEMS = 200;
+
+	// 1 disables batching
+	@Param({"1", "50"})
+	private int jdbcBatchSize;
+
+	private TransactionTemplate transactionTemplate;
+	private EntityManagerFactory entityManagerFactory;
+	private InvoiceRepository invoiceRepository;
+	private ProductRepository productRepository;
+	private User author;
+	private List<Long> productIds;
+	private long invoices;
+	private long statements;
+
+	@Setup
+	public void setup() {
+		transactionTemplate = BenchmarkContext.get().getBean(TransactionTemplate.class);
+		entityManagerFactory = BenchmarkContext.get().getBean(EntityManagerFactory.class);
+		invoiceRepository = BenchmarkContext.get().getBean(InvoiceRepository.class);
+		productRepository = BenchmarkContext.get().getBean(ProductRepository.class);
+		author = Objects.requireNonNull(BenchmarkContext.get().getBean(UserRepository.class)
+				.findByUsername("benchmarkSalesman0"));
+		productIds = productRepository.findAll(PageRequest.of(0, ITEMS)).map(Product::getId).getContent();
+	}
+
+	@Benchmark
+	public long insert() {
+		final SqlStatementCounter.Scope scope = SqlStatementCounter.open();
+		try (scope) {
+			return Objects.requireNonNull(transactionTemplate.execute(status -> {
+				Objects.requireNonNull(EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory))
+						.unwrap(Session.class)
+						.setJdbcBatchSize(jdbcBatchSize);
+				final Invoice invoice = new Invoice()
+						.setAuthor(author)
+						.setDisplayDescription("Benchmark insert")
+						.setStatus(InvoiceStatus.CREATED)
+						.setItemCount((long) ITEMS)
+						.setTotalAmount(0L)
+						.setDeleted(false);
+				final List<InvoiceItem> items = new ArrayList<>(ITEMS);
+				for (final Long productId : productIds) {
+					items.add(new InvoiceItem()
+							.setInvoice(invoice)
+							.setProduct(productRepository.getReferenceById(productId))
+							.setQuantity(1L)
+							.setUnitPrice(0L)
+							.setDeleted(false));
+				}
+				invoice.setItems(items);
+				final long invoiceId = invoiceRepository.saveAndFlush(invoice).getId();
+				status.setRollbackOnly();
+				return invoiceId;
+			}));
+		} finally {
+			invoices += 1;
+			statements += scope.getCount();
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void report() {
+		if (invoices > 0) System.out.printf("%d SQL statements per invoice%n", statements / invoices);
+		invoices = 0;
+		statements = 0;
+	}
+}
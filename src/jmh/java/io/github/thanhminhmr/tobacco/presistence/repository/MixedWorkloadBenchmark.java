@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.repository;
+
+import io.github.thanhminhmr.tobacco.BenchmarkContext;
+import io.github.thanhminhmr.tobacco.dto.model.InvoiceDto;
+import io.github.thanhminhmr.tobacco.presistence.model.Invoice;
+import io.github.thanhminhmr.tobacco.presistence.model.InvoiceItem;
+import io.github.thanhminhmr.tobacco.presistence.model.InvoiceStatus;
+import io.github.thanhminhmr.tobacco.presistence.model.Product;
+import io.github.thanhminhmr.tobacco.presistence.model.User;
+import jakarta.annotation.Nonnull;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invoice reads and writes at the same time, with the default configuration (one pool, rollback journal) and with
+ * the production profile (WAL, a single write connection and a separate read pool). The production profile runs
+ * against its own database file, since the WAL journal mode stays with the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MixedWorkloadBenchmark {
+	@Param({"default", "production"})
+	private String profile;
+
+	private TransactionTemplate readTemplate;
+	private TransactionTemplate writeTemplate;
+	private InvoiceRepository invoiceRepository;
+	private User author;
+	private Product product;
+
+	@Setup
+	public void setup() {
+		// read by the application when it starts, each value of the parameter runs in its own fork
+		if (profile.equals("production")) {
+			System.setProperty("spring.profiles.active", "production");
+			System.setProperty("tobacco.benchmark.database", "build/benchmark-production.sqlite"
+					+ "?journal_mode=WAL&synchronous=NORMAL&cache_size=-65536&mmap_size=268435456&busy_timeout=5000");
+		}
+		final PlatformTransactionManager transactionManager =
+				BenchmarkContext.get().getBean(PlatformTransactionManager.class);
+		readTemplate = new TransactionTemplate(transactionManager);
+		readTemplate.setReadOnly(true);
+		writeTemplate = new TransactionTemplate(transactionManager);
+		invoiceRepository = BenchmarkContext.get().getBean(InvoiceRepository.class);
+		author = Objects.requireNonNull(BenchmarkContext.get().getBean(UserRepository.class)
+				.findByUsername("benchmarkSalesman0"));
+		product = BenchmarkContext.get().getBean(ProductRepository.class)
+				.findAll(PageRequest.of(0, 1)).getContent().get(0);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(6)
+	public @Nonnull Slice<InvoiceDto> read() {
+		return Objects.requireNonNull(readTemplate.execute(status -> invoiceRepository.findProjectedSlice(
+				Keyset.after((root, query, builder) -> builder.isFalse(root.get("deleted")), null),
+				Keyset.pageRequest(20), Invoice.PROJECTION)));
+	}
+
+	// flushed then rolled back, so that the database does not grow while the write lock is still taken
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public long write() {
+		return Objects.requireNonNull(writeTemplate.execute(status -> {
+			final Invoice invoice = new Invoice()
+					.setAuthor(author)
+					.setDisplayDescription("Benchmark mixed workload")
+					.setStatus(InvoiceStatus.CREATED)
+					.setItemCount(1L)
+					.setTotalAmount(product.getCurrentPrice())
+					.setDeleted(false);
+			invoice.setItems(List.of(new InvoiceItem()
+					.setInvoice(invoice)
+					.setProduct(product)
+					.setQuantity(1L)
+					.setUnitPrice(product.getCurrentPrice())
+					.setDeleted(false)));
+			final long invoiceId = invoiceRepository.saveAndFlush(invoice).getId();
+			status.setRollbackOnly();
+			return invoiceId;
+		}));
+	}
+}
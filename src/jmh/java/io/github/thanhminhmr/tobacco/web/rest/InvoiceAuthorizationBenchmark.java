@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.presistence.model.Authority;
+import io.github.thanhminhmr.tobacco.presistence.model.User;
+import io.github.thanhminhmr.tobacco.presistence.repository.GroupRepository;
+import io.github.thanhminhmr.tobacco.security.SaleManagerVisibilityIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InvoicesController#isUserAuthorizedForThisInvoice} for a Sale Manager belonging to a few groups of the given
+ * size, against the author of a visible and of an invisible invoice, and for a Salesman against their own invoice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvoiceAuthorizationBenchmark {
+	private static final int GROUPS = 4;
+
+	@Param({"5", "50", "500"})
+	private int groupSize;
+
+	private InvoicesController controller;
+	private User saleManager;
+	private User salesman;
+	private long visibleAuthorId;
+	private long invisibleAuthorId;
+
+	@Setup
+	public void setup() {
+		// memberships are added one by one below, there is nothing to load
+		final GroupRepository groupRepository = (GroupRepository) Proxy.newProxyInstance(
+				GroupRepository.class.getClassLoader(), new Class<?>[]{GroupRepository.class},
+				(proxy, method, arguments) -> method.getName().equals("findAllMemberships") ? List.of() : null);
+		final SaleManagerVisibilityIndex visibilityIndex = new SaleManagerVisibilityIndex(groupRepository);
+		final long saleManagerId = 1;
+		long userId = saleManagerId;
+		for (long groupId = 1; groupId <= GROUPS; groupId++) {
+			visibilityIndex.addMembership(groupId, saleManagerId);
+			for (int index = 1; index < groupSize; index++) visibilityIndex.addMembership(groupId, ++userId);
+		}
+		// another group the sale manager is not part of
+		for (int index = 0; index < groupSize; index++) visibilityIndex.addMembership(GROUPS + 1, ++userId);
+		visibleAuthorId = userId - groupSize;
+		invisibleAuthorId = userId;
+
+		controller = new InvoicesController(null, null, null, null, null, null, null, visibilityIndex, null, null, 0,
+				null);
+		saleManager = new User().setId(saleManagerId).setAuthorities(Set.of(Authority.USER_SALE_MANAGER));
+		salesman = new User().setId(visibleAuthorId).setAuthorities(Set.of(Authority.USER_SALESMAN));
+	}
+
+	@Benchmark
+	public boolean saleManagerVisibleAuthor() {
+		return controller.isUserAuthorizedForThisInvoice(saleManager, visibleAuthorId);
+	}
+
+	@Benchmark
+	public boolean saleManagerInvisibleAuthor() {
+		return controller.isUserAuthorizedForThisInvoice(saleManager, invisibleAuthorId);
+	}
+
+	@Benchmark
+	public boolean salesmanOwnInvoice() {
+		return controller.isUserAuthorizedForThisInvoice(salesman, visibleAuthorId);
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.BenchmarkContext;
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import io.github.thanhminhmr.tobacco.dto.model.InvoiceDto;
+import io.github.thanhminhmr.tobacco.dto.model.ProductDto;
+import io.github.thanhminhmr.tobacco.dto.rest.KeysetCursor;
+import io.github.thanhminhmr.tobacco.presistence.model.Invoice;
+import io.github.thanhminhmr.tobacco.presistence.model.InvoiceStatus;
+import io.github.thanhminhmr.tobacco.presistence.model.Product;
+import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.Keyset;
+import io.github.thanhminhmr.tobacco.presistence.repository.ProductRepository;
+import io.github.thanhminhmr.tobacco.security.SaleManagerVisibilityIndex;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The repository calls behind the invoice and product list endpoints, end to end against the seeded database of
+ * {@link BenchmarkContext}. Page 10 is read with an offset in page and slice modes, and after a cursor in cursor mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryListBenchmark {
+	private static final int PAGE_NUMBER = 10;
+
+	@Param({"20", "100"})
+	private int pageSize;
+
+	private InvoiceRepository invoiceRepository;
+	private ProductRepository productRepository;
+	private InvoicesController.InvoiceListSpecification invoiceSpecification;
+	private ProductsController.ProductListSpecification productSpecification;
+	private Specification<Invoice> invoiceCursorSpecification;
+	private Specification<Product> productCursorSpecification;
+
+	@Setup
+	public void setup() {
+		invoiceRepository = BenchmarkContext.get().getBean(InvoiceRepository.class);
+		productRepository = BenchmarkContext.get().getBean(ProductRepository.class);
+		invoiceSpecification = new InvoicesController.InvoiceListSpecification(
+				BenchmarkContext.get().getBean(SaleManagerVisibilityIndex.class), BenchmarkContext.saleManager(),
+				null, InvoiceStatus.CREATED, null, null, null, null, false, null, null, null, null);
+		productSpecification = new ProductsController.ProductListSpecification(
+				"product", null, null, 1000L, 500_000L, false, null, null, null, null);
+		// the cursor of the last element before the page, as a client paging from the first page would have it
+		invoiceCursorSpecification = Keyset.after(invoiceSpecification, cursorBefore(invoiceRepository
+				.findProjectedSlice(invoiceSpecification, PageRequest.of(0, PAGE_NUMBER * pageSize, Keyset.SORT),
+						Invoice.PROJECTION)));
+		productCursorSpecification = Keyset.after(productSpecification, cursorBefore(productRepository
+				.findProjectedSlice(productSpecification, PageRequest.of(0, PAGE_NUMBER * pageSize, Keyset.SORT),
+						Product.PROJECTION)));
+	}
+
+	private static @Nullable KeysetCursor cursorBefore(@Nonnull Slice<? extends DtoMarker> previous) {
+		return previous.hasContent()
+				? KeysetCursor.of(previous.getContent().get(previous.getNumberOfElements() - 1))
+				: null;
+	}
+
+	@Benchmark
+	public @Nonnull Page<InvoiceDto> invoicePage() {
+		return invoiceRepository.findProjectedPage(invoiceSpecification, PageRequest.of(PAGE_NUMBER, pageSize),
+				Invoice.PROJECTION);
+	}
+
+	@Benchmark
+	public @Nonnull Slice<InvoiceDto> invoiceSlice() {
+		return invoiceRepository.findProjectedSlice(invoiceSpecification, PageRequest.of(PAGE_NUMBER, pageSize),
+				Invoice.PROJECTION);
+	}
+
+	@Benchmark
+	public @Nonnull Slice<InvoiceDto> invoiceCursor() {
+		return invoiceRepository.findProjectedSlice(invoiceCursorSpecification, Keyset.pageRequest(pageSize),
+				Invoice.PROJECTION);
+	}
+
+	@Benchmark
+	public @Nonnull Page<ProductDto> productPage() {
+		return productRepository.findProjectedPage(productSpecification, PageRequest.of(PAGE_NUMBER, pageSize),
+				Product.PROJECTION);
+	}
+
+	@Benchmark
+	public @Nonnull Slice<ProductDto> productCursor() {
+		return productRepository.findProjectedSlice(productCursorSpecification, Keyset.pageRequest(pageSize),
+				Product.PROJECTION);
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.BenchmarkContext;
+import io.github.thanhminhmr.tobacco.presistence.model.Invoice;
+import io.github.thanhminhmr.tobacco.presistence.model.InvoiceStatus;
+import io.github.thanhminhmr.tobacco.presistence.model.Product;
+import io.github.thanhminhmr.tobacco.presistence.model.User;
+import io.github.thanhminhmr.tobacco.security.SaleManagerVisibilityIndex;
+import jakarta.annotation.Nonnull;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the criteria predicates of the invoice and product list endpoints, without running them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpecificationBenchmark {
+	private EntityManager entityManager;
+	private CriteriaBuilder builder;
+	private InvoicesController.InvoiceListSpecification invoiceSpecification;
+	private ProductsController.ProductListSpecification productSpecification;
+
+	@Setup
+	public void setup() {
+		entityManager = BenchmarkContext.get().getBean(EntityManagerFactory.class).createEntityManager();
+		builder = entityManager.getCriteriaBuilder();
+		final User saleManager = BenchmarkContext.saleManager();
+		final Instant now = Instant.now();
+		invoiceSpecification = new InvoicesController.InvoiceListSpecification(
+				BenchmarkContext.get().getBean(SaleManagerVisibilityIndex.class), saleManager,
+				"benchmark invoice", InvoiceStatus.CREATED, 1L, 10L, null, null, false,
+				now, now.minus(30, ChronoUnit.DAYS), null, null);
+		productSpecification = new ProductsController.ProductListSpecification(
+				"product", null, null, 1000L, 100_000L, false, now, now.minus(30, ChronoUnit.DAYS), null, null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		entityManager.close();
+	}
+
+	@Benchmark
+	public @Nonnull Predicate invoiceListSpecification() {
+		final CriteriaQuery<Invoice> query = builder.createQuery(Invoice.class);
+		return invoiceSpecification.toPredicate(query.from(Invoice.class), query, builder);
+	}
+
+	@Benchmark
+	public @Nonnull Predicate productListSpecification() {
+		final CriteriaQuery<Product> query = builder.createQuery(Product.class);
+		return productSpecification.toPredicate(query.from(Product.class), query, builder);
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.BenchmarkContext;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.web.SecurityFilterChain;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The invoice list and create endpoints over HTTP, with requests served by the Tomcat worker pool (platform threads)
+ * or by virtual threads, see {@code VirtualThreadConfig}. The clients are more than the 200 workers of the pool, so
+ * that requests queue in front of the server in platform mode and on the database permits in virtual mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(1)
+public class ThreadModeBenchmark {
+	@Param({"false", "true"})
+	private boolean virtualThreads;
+
+	private HttpClient client;
+	private URI invoices;
+	private String saleManager;
+	private String salesman;
+
+	@Setup
+	public void setup() {
+		// read by the application when it starts, each value of the parameter runs in its own fork
+		System.setProperty("tobacco.threads.virtual", String.valueOf(virtualThreads));
+		final int port = ((WebServerApplicationContext) BenchmarkContext.get(ApiClientSecurity.class))
+				.getWebServer().getPort();
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		invoices = URI.create("http://localhost:" + port + "/api/invoices");
+		saleManager = basic("benchmarkSaleManager");
+		salesman = basic("benchmarkSalesman0");
+	}
+
+	@Benchmark
+	public int list() throws IOException, InterruptedException {
+		return send(HttpRequest.newBuilder(URI.create(invoices + "?withTotal=false&pageSize=20"))
+				.header("Authorization", saleManager)
+				.GET()
+				.build());
+	}
+
+	@Benchmark
+	public int create() throws IOException, InterruptedException {
+		return send(HttpRequest.newBuilder(invoices)
+				.header("Authorization", salesman)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"displayDescription\":\"Benchmark create\"}"))
+				.build());
+	}
+
+	private int send(HttpRequest request) throws IOException, InterruptedException {
+		final HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+		if (response.statusCode() != 200) throw new IllegalStateException("HTTP " + response.statusCode());
+		return response.statusCode();
+	}
+
+	private static String basic(String username) {
+		return "Basic " + Base64.getEncoder().encodeToString((username + ":password").getBytes(StandardCharsets.UTF_8));
+	}
+
+
+	/**
+	 * The clients have no browser session to get a CSRF token from: the invoice endpoints are served by a chain with
+	 * the same rule, {@code authenticated()}, but without CSRF protection.
+	 */
+	@Configuration
+	public static class ApiClientSecurity {
+		@Bean
+		@Order(Ordered.HIGHEST_PRECEDENCE)
+		public SecurityFilterChain apiClientSecurityFilterChain(HttpSecurity security) throws Exception {
+			return security
+					.securityMatcher("/api/invoices/**")
+					.authorizeHttpRequests(requests -> requests.anyRequest().authenticated())
+					.httpBasic(Customizer.withDefaults())
+					.csrf(AbstractHttpConfigurer::disable)
+					.build();
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.BenchmarkContext;
+import io.github.thanhminhmr.tobacco.dto.model.InvoiceDto;
+import io.github.thanhminhmr.tobacco.presistence.model.Invoice;
+import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceRepository;
+import io.github.thanhminhmr.tobacco.security.SaleManagerVisibilityIndex;
+import io.github.thanhminhmr.tobacco.util.LongHashSet;
+import jakarta.annotation.Nonnull;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two ways of filtering the invoices visible to a sale manager, against a million invoices: the IN-list of the
+ * precomputed visible authors, and the membership subquery over groups used above
+ * {@link InvoicesController.InvoiceListSpecification#MAXIMUM_AUTHOR_IN_LIST} visible authors. Both the page and the
+ * count are measured, the count scans every visible invoice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VisibilityBenchmark {
+	private InvoiceRepository invoiceRepository;
+	private Specification<Invoice> authorIn;
+	private Specification<Invoice> authorSharesGroup;
+
+	@Setup
+	public void setup() {
+		// read when the database is seeded, in a file of its own
+		System.setProperty("tobacco.benchmark.invoices", "1000000");
+		System.setProperty("tobacco.benchmark.database", "build/benchmark-1m.sqlite");
+		invoiceRepository = BenchmarkContext.get().getBean(InvoiceRepository.class);
+		final long saleManagerId = BenchmarkContext.saleManager().getId();
+		final LongHashSet visibleAuthors = BenchmarkContext.get().getBean(SaleManagerVisibilityIndex.class)
+				.getVisibleAuthors(saleManagerId);
+		authorIn = (root, query, builder) -> InvoicesController.InvoiceListSpecification
+				.authorIn(root, visibleAuthors);
+		authorSharesGroup = (root, query, builder) -> InvoicesController.InvoiceListSpecification
+				.authorSharesGroup(root, query, builder, saleManagerId);
+	}
+
+	@Benchmark
+	public @Nonnull Slice<InvoiceDto> authorInPage() {
+		return invoiceRepository.findProjectedSlice(authorIn, PageRequest.of(10, 20), Invoice.PROJECTION);
+	}
+
+	@Benchmark
+	public @Nonnull Slice<InvoiceDto> authorSharesGroupPage() {
+		return invoiceRepository.findProjectedSlice(authorSharesGroup, PageRequest.of(10, 20), Invoice.PROJECTION);
+	}
+
+	@Benchmark
+	public long authorInCount() {
+		return invoiceRepository.count(authorIn);
+	}
+
+	@Benchmark
+	public long authorSharesGroupCount() {
+		return invoiceRepository.count(authorSharesGroup);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * SQLite only allows a single writer at a time. Instead of letting every pooled connection fight for the write lock,
+ * read-write transactions are routed to a pool with a single connection, while everything else is served by a
+ * separate pool of read connections. In WAL mode the readers are never blocked by the writer.
+ * <p>
+ * The routing decision needs to know whether the current transaction is read-only, which is only known after the
+ * transaction has started, hence the {@link LazyConnectionDataSourceProxy} in front of the routing data source.
+ */
+@Configuration
+@Profile("production")
+public class ProductionDataSourceConfig {
+	private static final @Nonnull String WRITE = "write";
+	private static final @Nonnull String READ = "read";
+
+	@Bean
+	public @Nonnull HikariDataSource writeDataSource(@Nonnull DataSourceProperties properties) {
+		final HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.build();
+		dataSource.setPoolName("sqlite-write");
+		dataSource.setMaximumPoolSize(1);
+		return dataSource;
+	}
+
+	@Bean
+	public @Nonnull HikariDataSource readDataSource(@Nonnull DataSourceProperties properties,
+			@Value("${tobacco.datasource.read.maximum-pool-size:8}") int maximumPoolSize) {
+		final HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+				.type(HikariDataSource.class)
+				.build();
+		dataSource.setPoolName("sqlite-read");
+		dataSource.setMaximumPoolSize(maximumPoolSize);
+		return dataSource;
+	}
+
+	@Bean
+	@Primary
+	public @Nonnull DataSource dataSource(@Nonnull @Qualifier("writeDataSource") DataSource writeDataSource,
+			@Nonnull @Qualifier("readDataSource") DataSource readDataSource) {
+		final AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
+			@Override
+			protected @Nonnull Object determineCurrentLookupKey() {
+				return TransactionSynchronizationManager.isActualTransactionActive()
+						&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? WRITE : READ;
+			}
+		};
+		routingDataSource.setTargetDataSources(Map.of(WRITE, writeDataSource, READ, readDataSource));
+		routingDataSource.setDefaultTargetDataSource(readDataSource);
+		routingDataSource.afterPropertiesSet();
+		return new LazyConnectionDataSourceProxy(routingDataSource);
+	}
+}
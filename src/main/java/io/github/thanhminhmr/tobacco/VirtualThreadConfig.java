@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco;
+
+import io.github.thanhminhmr.tobacco.util.ConcurrencyLimitingDataSource;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves every request, and every asynchronous request body such as the invoice export, on its own virtual thread
+ * instead of the fixed Tomcat worker pool.
+ * <p>
+ * Virtual threads are cheap, connections are not, and SQLite only has one writer: the primary data source is put
+ * behind a {@link ConcurrencyLimitingDataSource}, so that requests queue on a semaphore instead of on the pool or on
+ * the database lock. The SQLite driver also holds monitors around its native calls, which pins the carrier thread, so
+ * the limit should stay around the number of carriers (the available processors by default).
+ */
+@Configuration
+@ConditionalOnProperty(name = "tobacco.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+	@Bean
+	public @Nonnull TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+		return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	@Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+	public @Nonnull AsyncTaskExecutor applicationTaskExecutor() {
+		return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+	@Bean
+	public static @Nonnull BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(
+			@Value("${tobacco.threads.virtual.database-concurrency:0}") int databaseConcurrency,
+			@Value("${tobacco.threads.virtual.database-acquire-timeout:30s}") @Nonnull Duration acquireTimeout) {
+		final int permits = databaseConcurrency > 0 ? databaseConcurrency : Runtime.getRuntime().availableProcessors();
+		return new BeanPostProcessor() {
+			@Override
+			public @Nonnull Object postProcessAfterInitialization(@Nonnull Object bean, @Nonnull String beanName) {
+				// only the data source used by JPA and JdbcTemplate, not the pools behind it in production
+				return bean instanceof DataSource dataSource && beanName.equals("dataSource")
+						? new ConcurrencyLimitingDataSource(dataSource, permits, acquireTimeout)
+						: bean;
+			}
+		};
+	}
+}
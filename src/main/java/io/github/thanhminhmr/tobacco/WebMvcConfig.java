@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco;
+
+import io.github.thanhminhmr.tobacco.web.rest.SqlBudgetInterceptor;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+	private final int sqlBudget;
+	private final boolean sqlBudgetFailing;
+
+	public WebMvcConfig(@Value("${tobacco.sql-budget.default:20}") int sqlBudget,
+			@Value("${tobacco.sql-budget.fail:false}") boolean sqlBudgetFailing) {
+		this.sqlBudget = sqlBudget;
+		this.sqlBudgetFailing = sqlBudgetFailing;
+	}
+
+	@Override
+	public void addInterceptors(@Nonnull InterceptorRegistry registry) {
+		registry.addInterceptor(new SqlBudgetInterceptor(sqlBudget, sqlBudgetFailing));
+	}
+}
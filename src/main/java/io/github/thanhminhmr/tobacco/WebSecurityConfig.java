@@ -5,8 +5,14 @@
 package io.github.thanhminhmr.tobacco;
 
 import io.github.thanhminhmr.tobacco.presistence.model.Authority;
+import io.github.thanhminhmr.tobacco.security.BearerTokenFilter;
+import io.github.thanhminhmr.tobacco.security.CachingPasswordEncoder;
+import io.github.thanhminhmr.tobacco.security.PrincipalCache;
+import io.github.thanhminhmr.tobacco.security.TokenService;
 import io.github.thanhminhmr.tobacco.web.rest.AccountController;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -16,6 +22,9 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+
+import java.time.Duration;
 
 @Configuration
 public class WebSecurityConfig {
@@ -25,7 +34,8 @@ public class WebSecurityConfig {
 	}
 
 	@Bean
-	public @Nonnull SecurityFilterChain securityFilterChain(@Nonnull HttpSecurity security) throws Exception {
+	public @Nonnull SecurityFilterChain securityFilterChain(@Nonnull HttpSecurity security,
+			@Nonnull TokenService tokenService) throws Exception {
 		return security
 				.authorizeHttpRequests(requests -> requests
 						.requestMatchers("/api/account/**").authenticated()
@@ -34,22 +44,30 @@ public class WebSecurityConfig {
 						.requestMatchers("/api/products/**").authenticated()
 						.requestMatchers("/api/invoices/**").authenticated()
 						.requestMatchers("/api/**").denyAll()
+						.requestMatchers("/actuator/health").permitAll()
+						.requestMatchers("/actuator/**").hasAuthority(Authority.Name.SUPER_ADMIN)
 						.anyRequest().permitAll())
 				.httpBasic(Customizer.withDefaults())
+				.addFilterBefore(new BearerTokenFilter(tokenService), BasicAuthenticationFilter.class)
 //				.csrf(CsrfConfigurer::disable)
 				.build();
 	}
 
 	@Bean
-	public @Nonnull PasswordEncoder passwordEncoder() {
-		return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+	public @Nonnull PasswordEncoder passwordEncoder(
+			@Value("${tobacco.security.credential-cache.maximum-size:10000}") int maximumSize,
+			@Value("${tobacco.security.credential-cache.time-to-live:1m}") @Nonnull Duration timeToLive,
+			@Nonnull MeterRegistry meterRegistry) {
+		return new CachingPasswordEncoder(PasswordEncoderFactories.createDelegatingPasswordEncoder(),
+				maximumSize, timeToLive, meterRegistry);
 	}
 
 	@Bean
 	public @Nonnull DaoAuthenticationProvider authenticationProvider(@Nonnull AccountController accountController,
-			@Nonnull PasswordEncoder passwordEncoder) {
+			@Nonnull PasswordEncoder passwordEncoder, @Nonnull PrincipalCache principalCache) {
 		final DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider(passwordEncoder);
 		authenticationProvider.setUserDetailsService(accountController);
+		authenticationProvider.setUserCache(principalCache);
 		return authenticationProvider;
 	}
 }
\ No newline at end of file
@@ -4,5 +4,12 @@
 
 package io.github.thanhminhmr.tobacco.dto.model;
 
+import jakarta.annotation.Nullable;
+
+import java.time.Instant;
+
 public interface DtoMarker {
+	@Nullable Long id();
+
+	@Nullable Instant createdAt();
 }
@@ -7,6 +7,7 @@ package io.github.thanhminhmr.tobacco.dto.model;
 import io.github.thanhminhmr.tobacco.dto.validation.DisplayString;
 import io.github.thanhminhmr.tobacco.presistence.model.InvoiceStatus;
 import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Past;
 import lombok.With;
 
@@ -22,6 +23,8 @@ public record InvoiceDto(
 		@Nullable UserDto author,
 		@Nullable @DisplayString String displayDescription,
 		@Nullable InvoiceStatus status,
+		@Nullable @Min(0) Long itemCount,
+		@Nullable @Min(0) Long totalAmount,
 		@Nullable Boolean deleted,
 		@Nullable @Past Instant createdAt,
 		@Nullable @Past Instant updatedAt
@@ -24,6 +24,7 @@ public record ProductDto(
 		@Nullable @DisplayString String displayUnit,
 		@Nullable @Min(0) Long currentPrice,
 		@Nullable Boolean deleted,
+		@Nullable @Min(0) Long version,
 		@Nullable @Past Instant createdAt,
 		@Nullable @Past Instant updatedAt
 ) implements DtoMarker, Serializable {
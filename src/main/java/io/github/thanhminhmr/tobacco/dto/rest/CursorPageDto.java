@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.dto.rest;
+
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Slice;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * This is a special DTO to deal with keyset (cursor) paging.
+ *
+ * @param elements
+ * @param next Opaque cursor to pass as {@code after} to get the next page, {@code null} on the last page.
+ * @param pageSize
+ * @param <Dto> Any DTO that are marked with {@link DtoMarker}.
+ */
+public record CursorPageDto<Dto extends DtoMarker>(
+		@NotNull Collection<Dto> elements,
+		@Nullable String next,
+		@Min(1) @Max(100) int pageSize
+) implements ListDto<Dto>, Serializable {
+	public static <Dto extends DtoMarker> @Nonnull CursorPageDto<Dto> of(@Nonnull Slice<Dto> slice) {
+		final List<Dto> dtos = slice.getContent();
+		return new CursorPageDto<>(
+				dtos,
+				slice.hasNext() ? KeysetCursor.of(dtos.get(dtos.size() - 1)).encode() : null,
+				slice.getSize()
+		);
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.dto.rest;
+
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position of the last element of a {@link CursorPageDto}. Lists in cursor mode are ordered by
+ * {@code (createdAt, id)}, and the next page starts strictly after this position, see
+ * {@link io.github.thanhminhmr.tobacco.presistence.repository.Keyset}.
+ *
+ * @param createdAt
+ * @param id
+ */
+public record KeysetCursor(
+		@Nonnull Instant createdAt,
+		long id
+) {
+	public static @Nonnull KeysetCursor of(@Nonnull DtoMarker dto) {
+		return new KeysetCursor(Objects.requireNonNull(dto.createdAt()), Objects.requireNonNull(dto.id()));
+	}
+
+	/**
+	 * @param token Cursor from {@link CursorPageDto#next()}, or an empty string for the first page.
+	 * @return The cursor, or {@code null} for the first page.
+	 * @throws InvalidCursorException If the token is not a cursor.
+	 */
+	public static @Nullable KeysetCursor decode(@Nonnull String token) {
+		if (token.isBlank()) return null;
+		try {
+			final String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			final int separator = value.lastIndexOf(',');
+			return new KeysetCursor(Instant.parse(value.substring(0, separator)),
+					Long.parseLong(value.substring(separator + 1)));
+		} catch (final IllegalArgumentException | IndexOutOfBoundsException | DateTimeException exception) {
+			throw new InvalidCursorException(exception);
+		}
+	}
+
+	public @Nonnull String encode() {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString((createdAt.toString() + ',' + id).getBytes(StandardCharsets.UTF_8));
+	}
+
+
+	public static final class InvalidCursorException extends IllegalArgumentException {
+		private InvalidCursorException(@Nonnull Throwable cause) {
+			super("Invalid cursor.", cause);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.dto.rest;
+
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Collection;
+
+/**
+ * Common shape of every list response, whichever paging mode produced it.
+ *
+ * @param <Dto> Any DTO that are marked with {@link DtoMarker}.
+ */
+public interface ListDto<Dto extends DtoMarker> {
+	@NotNull Collection<Dto> elements();
+}
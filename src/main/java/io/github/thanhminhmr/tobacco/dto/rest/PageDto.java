@@ -5,9 +5,12 @@
 package io.github.thanhminhmr.tobacco.dto.rest;
 
 import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.annotation.Nonnull;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.io.Serializable;
 import java.util.Collection;
@@ -26,5 +29,29 @@ public record PageDto<Dto extends DtoMarker>(
 		@Min(0) int numOfPage,
 		@Min(0) int pageNumber,
 		@Min(1) @Max(100) int pageSize
-) implements Serializable {
+) implements ListDto<Dto>, Serializable {
+	public static <Dto extends DtoMarker> @Nonnull PageDto<Dto> of(@Nonnull Page<Dto> page) {
+		return new PageDto<>(
+				page.getContent(),
+				page.getTotalPages(),
+				page.getNumber(),
+				page.getSize()
+		);
+	}
+
+	/**
+	 * Build a page from a slice and an estimated total number of elements. The number of pages is never less than
+	 * what the slice itself proves to exist, even if the estimate is stale.
+	 */
+	public static <Dto extends DtoMarker> @Nonnull PageDto<Dto> of(@Nonnull Slice<Dto> slice, long estimatedTotal) {
+		final int size = slice.getSize();
+		final long estimatedPages = (estimatedTotal + size - 1) / size;
+		final int knownPages = slice.getNumber() + (slice.hasNext() ? 2 : 1);
+		return new PageDto<>(
+				slice.getContent(),
+				(int) Math.max(estimatedPages, knownPages),
+				slice.getNumber(),
+				size
+		);
+	}
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.dto.rest;
+
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.annotation.Nonnull;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Slice;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * This is a special DTO to deal with paging without a total count.
+ *
+ * @param elements
+ * @param hasNext Whether there is a page after this one.
+ * @param pageNumber
+ * @param pageSize
+ * @param <Dto> Any DTO that are marked with {@link DtoMarker}.
+ */
+public record SliceDto<Dto extends DtoMarker>(
+		@NotNull Collection<Dto> elements,
+		boolean hasNext,
+		@Min(0) int pageNumber,
+		@Min(1) @Max(100) int pageSize
+) implements ListDto<Dto>, Serializable {
+	public static <Dto extends DtoMarker> @Nonnull SliceDto<Dto> of(@Nonnull Slice<Dto> slice) {
+		return new SliceDto<>(
+				slice.getContent(),
+				slice.hasNext(),
+				slice.getNumber(),
+				slice.getSize()
+		);
+	}
+}
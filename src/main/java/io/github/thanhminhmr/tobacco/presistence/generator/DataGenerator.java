@@ -0,0 +1,447 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.generator;
+
+import io.github.thanhminhmr.tobacco.presistence.model.*;
+import io.github.thanhminhmr.tobacco.presistence.repository.GroupRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.ProductRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.UserRepository;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fills the database with synthetic users, groups, products and invoices, up to the configured number of each. Rows
+ * that are already there count toward these numbers, so running it again only tops the tables up.
+ * <p>
+ * The data is skewed the way real data is: a few salesmen write most of the invoices, a few groups hold most of the
+ * salesmen, a few products are on most of the items, and most invoices are done. Every chunk of rows is built from its
+ * own seeded random, so the same configuration always produces the same data. The comments of an invoice walk the
+ * approval workflow up to its status, each step taken by a user of the right role, followed by a few remarks.
+ * <p>
+ * Chunks are built in parallel, users and groups at the same time as products, then invoices with their items and
+ * comments. SQLite only has a single writer, so the chunks are written one at a time, each in one transaction with
+ * batched inserts.
+ */
+@Component
+@ConditionalOnProperty(name = "tobacco.generator.enabled", havingValue = "true")
+public final class DataGenerator implements CommandLineRunner {
+	private static final @Nonnull Logger LOGGER = LoggerFactory.getLogger(DataGenerator.class);
+	private static final @Nonnull String PASSWORD = "password";
+	private static final @Nonnull InvoiceStatus[] STATUSES = InvoiceStatus.values();
+	// the approval workflow, an invoice can be aborted at any of the waiting steps
+	private static final @Nonnull List<InvoiceStatus> WORKFLOW = List.of(
+			InvoiceStatus.CREATED,
+			InvoiceStatus.WAIT_FOR_SALES_MANAGER_APPROVAL,
+			InvoiceStatus.WAIT_FOR_ACCOUNTANT_APPROVAL,
+			InvoiceStatus.WAIT_FOR_MARKET_DIRECTOR_APPROVAL,
+			InvoiceStatus.WAIT_FOR_ACCOUNTANT_ISSUES_INVOICE,
+			InvoiceStatus.WAIT_FOR_SALESMAN_RECEIVE,
+			InvoiceStatus.DONE
+	);
+	private static final @Nonnull Map<InvoiceStatus, Double> STATUS_WEIGHTS = Map.of(
+			InvoiceStatus.CREATED, 10.0,
+			InvoiceStatus.DONE, 55.0,
+			InvoiceStatus.ABORTED, 5.0,
+			InvoiceStatus.WAIT_FOR_SALES_MANAGER_APPROVAL, 10.0,
+			InvoiceStatus.WAIT_FOR_ACCOUNTANT_APPROVAL, 8.0,
+			InvoiceStatus.WAIT_FOR_MARKET_DIRECTOR_APPROVAL, 5.0,
+			InvoiceStatus.WAIT_FOR_ACCOUNTANT_ISSUES_INVOICE, 4.0,
+			InvoiceStatus.WAIT_FOR_SALESMAN_RECEIVE, 3.0
+	);
+
+	private final @Nonnull UserRepository userRepository;
+	private final @Nonnull GroupRepository groupRepository;
+	private final @Nonnull ProductRepository productRepository;
+	private final @Nonnull InvoiceRepository invoiceRepository;
+	private final @Nonnull PasswordEncoder passwordEncoder;
+	private final @Nonnull TransactionTemplate transactionTemplate;
+	private final @Nonnull ConfigurableApplicationContext applicationContext;
+
+	private final int saleManagers;
+	private final int salesmen;
+	private final int groups;
+	private final long products;
+	private final long invoices;
+	private final int maximumItemsPerInvoice;
+	private final int maximumRemarksPerInvoice;
+	private final double skew;
+	private final int chunkSize;
+	private final int threads;
+	private final long seed;
+	private final boolean exitWhenDone;
+
+	private final @Nonnull ReentrantLock writeLock = new ReentrantLock();
+
+	public DataGenerator(@Nonnull UserRepository userRepository,
+			@Nonnull GroupRepository groupRepository,
+			@Nonnull ProductRepository productRepository,
+			@Nonnull InvoiceRepository invoiceRepository,
+			@Nonnull PasswordEncoder passwordEncoder,
+			@Nonnull TransactionTemplate transactionTemplate,
+			@Nonnull ConfigurableApplicationContext applicationContext,
+			@Value("${tobacco.generator.sale-managers:2}") int saleManagers,
+			@Value("${tobacco.generator.salesmen:3}") int salesmen,
+			@Value("${tobacco.generator.groups:2}") int groups,
+			@Value("${tobacco.generator.products:3}") long products,
+			@Value("${tobacco.generator.invoices:3}") long invoices,
+			@Value("${tobacco.generator.maximum-items-per-invoice:10}") int maximumItemsPerInvoice,
+			@Value("${tobacco.generator.maximum-remarks-per-invoice:3}") int maximumRemarksPerInvoice,
+			@Value("${tobacco.generator.skew:1.0}") double skew,
+			@Value("${tobacco.generator.chunk-size:1000}") int chunkSize,
+			@Value("${tobacco.generator.threads:1}") int threads,
+			@Value("${tobacco.generator.seed:42}") long seed,
+			@Value("${tobacco.generator.exit-when-done:false}") boolean exitWhenDone) {
+		this.userRepository = userRepository;
+		this.groupRepository = groupRepository;
+		this.productRepository = productRepository;
+		this.invoiceRepository = invoiceRepository;
+		this.passwordEncoder = passwordEncoder;
+		this.transactionTemplate = transactionTemplate;
+		this.applicationContext = applicationContext;
+		this.saleManagers = saleManagers;
+		this.salesmen = salesmen;
+		this.groups = groups;
+		this.products = products;
+		this.invoices = invoices;
+		this.maximumItemsPerInvoice = Math.max(maximumItemsPerInvoice, 1);
+		this.maximumRemarksPerInvoice = Math.max(maximumRemarksPerInvoice, 0);
+		this.skew = skew;
+		this.chunkSize = Math.max(chunkSize, 1);
+		this.threads = Math.max(threads, 1);
+		this.seed = seed;
+		this.exitWhenDone = exitWhenDone;
+	}
+
+	@Override
+	public void run(String... args) throws InterruptedException, ExecutionException {
+		final long start = System.nanoTime();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// users and groups do not depend on the products
+			final List<Future<?>> futures = new ArrayList<>();
+			futures.add(executor.submit(this::generateUsersAndGroups));
+			futures.addAll(generateProducts(executor));
+			for (final Future<?> future : futures) future.get();
+			for (final Future<?> future : generateInvoices(executor)) future.get();
+		} finally {
+			executor.shutdownNow();
+		}
+		LOGGER.info("Data generated in {} ms", (System.nanoTime() - start) / 1_000_000);
+		if (exitWhenDone) System.exit(SpringApplication.exit(applicationContext));
+	}
+
+	private void generateUsersAndGroups() {
+		final Set<String> usernames = new HashSet<>();
+		for (final User user : userRepository.findAll()) usernames.add(user.getUsername());
+		// every generated user has the same password, hash it once
+		final String password = passwordEncoder.encode(PASSWORD);
+		final List<User> newUsers = new ArrayList<>();
+		for (int index = 1; index <= saleManagers; index++) {
+			final String username = "saleManager" + index;
+			if (!usernames.contains(username)) newUsers.add(newUser(username, password, Authority.USER_SALE_MANAGER));
+		}
+		for (int index = 1; index <= salesmen; index++) {
+			final String username = "salesman" + index;
+			if (!usernames.contains(username)) newUsers.add(newUser(username, password, Authority.USER_SALESMAN));
+		}
+		// a single user for each of the other roles of the approval workflow
+		if (!usernames.contains("accountant1")) {
+			newUsers.add(newUser("accountant1", password, Authority.USER_ACCOUNTANT));
+		}
+		if (!usernames.contains("marketDirector1")) {
+			newUsers.add(newUser("marketDirector1", password, Authority.USER_MARKET_DIRECTOR));
+		}
+		for (int first = 0; first < newUsers.size(); first += chunkSize) {
+			final List<User> chunk = newUsers.subList(first, Math.min(first + chunkSize, newUsers.size()));
+			write(() -> userRepository.saveAll(chunk));
+		}
+		LOGGER.info("Generated {} users", newUsers.size());
+
+		final int existingGroups = (int) Math.min(groupRepository.count(), groups);
+		if (existingGroups >= groups) return;
+		final List<User> managerUsers = findUsers(Authority.USER_SALE_MANAGER);
+		final List<User> salesmanUsers = findUsers(Authority.USER_SALESMAN);
+		final List<Group> newGroups = new ArrayList<>();
+		for (int index = existingGroups; index < groups; index++) {
+			final Set<User> members = new HashSet<>();
+			if (!managerUsers.isEmpty()) members.add(managerUsers.get(index % managerUsers.size()));
+			newGroups.add(new Group()
+					.setDisplayName("Group " + (index + 1))
+					.setUsers(members)
+					.setDeleted(false));
+		}
+		// a few groups get most of the salesmen, only the new groups are filled
+		final SplittableRandom random = random("groups", existingGroups);
+		final Distribution groupDistribution = Distribution.zipf(groups, skew);
+		for (final User salesman : salesmanUsers) {
+			final int index = groupDistribution.sample(random) - existingGroups;
+			if (index >= 0) newGroups.get(index).getUsers().add(salesman);
+		}
+		write(() -> groupRepository.saveAll(newGroups));
+		LOGGER.info("Generated {} groups", newGroups.size());
+	}
+
+	private @Nonnull List<Future<?>> generateProducts(@Nonnull ExecutorService executor) {
+		final long existing = productRepository.count();
+		final List<Future<?>> futures = new ArrayList<>();
+		final AtomicLong generated = new AtomicLong();
+		for (long first = existing; first < products; first += chunkSize) {
+			final long begin = first;
+			final long end = Math.min(first + chunkSize, products);
+			futures.add(executor.submit(() -> {
+				final SplittableRandom random = random("products", begin);
+				final List<Product> chunk = new ArrayList<>();
+				for (long index = begin; index < end; index++) {
+					chunk.add(new Product()
+							.setDisplayName("Product " + (index + 1))
+							.setDisplayDescription("Synthetic product number " + (index + 1))
+							.setDisplayUnit(random.nextInt(4) == 0 ? "box" : "pack")
+							// prices spread evenly over orders of magnitude, from 1 000 to 10 000 000
+							.setCurrentPrice((long) Math.exp(random.nextDouble(Math.log(1_000), Math.log(10_000_000))))
+							.setDeleted(false));
+				}
+				write(() -> productRepository.saveAll(chunk));
+				LOGGER.info("Generated {} / {} products", generated.addAndGet(chunk.size()), products - existing);
+			}));
+		}
+		return futures;
+	}
+
+	private @Nonnull List<Future<?>> generateInvoices(@Nonnull ExecutorService executor) {
+		final long existing = invoiceRepository.count();
+		if (existing >= invoices) return List.of();
+		final List<User> authors = findUsers(Authority.USER_SALESMAN);
+		final List<User> accountants = findUsers(Authority.USER_ACCOUNTANT);
+		final List<User> marketDirectors = findUsers(Authority.USER_MARKET_DIRECTOR);
+		final Map<Long, List<User>> saleManagersBySalesman = findSaleManagersBySalesman();
+		final List<Product> availableProducts = new ArrayList<>();
+		for (final Product product : productRepository.findAll()) {
+			if (!product.getDeleted()) availableProducts.add(product);
+		}
+		if (authors.isEmpty() || availableProducts.isEmpty()) {
+			LOGGER.warn("No salesman or no product, no invoice generated");
+			return List.of();
+		}
+		final Distribution authorDistribution = Distribution.zipf(authors.size(), skew);
+		final Distribution productDistribution = Distribution.zipf(availableProducts.size(), skew);
+		final Distribution statusDistribution = Distribution.of(Arrays.stream(STATUSES)
+				.mapToDouble(STATUS_WEIGHTS::get)
+				.toArray());
+
+		final List<Future<?>> futures = new ArrayList<>();
+		final AtomicLong generated = new AtomicLong();
+		for (long first = existing; first < invoices; first += chunkSize) {
+			final long begin = first;
+			final long end = Math.min(first + chunkSize, invoices);
+			futures.add(executor.submit(() -> {
+				final SplittableRandom random = random("invoices", begin);
+				final List<Invoice> chunk = new ArrayList<>();
+				for (long index = begin; index < end; index++) {
+					final User author = authors.get(authorDistribution.sample(random));
+					final InvoiceStatus sampledStatus = STATUSES[statusDistribution.sample(random)];
+					final Invoice invoice = new Invoice()
+							.setAuthor(author)
+							.setDisplayDescription("Synthetic invoice number " + (index + 1))
+							.setDeleted(false);
+					// mostly a few items, sometimes many
+					final int itemCount = (int) Math.min(maximumItemsPerInvoice, 1 + exponential(random, 2.0));
+					final List<InvoiceItem> items = new ArrayList<>(itemCount);
+					long totalAmount = 0;
+					for (int item = 0; item < itemCount; item++) {
+						final Product product = availableProducts.get(productDistribution.sample(random));
+						final long quantity = 1 + exponential(random, 10.0);
+						items.add(new InvoiceItem()
+								.setInvoice(invoice)
+								.setProduct(product)
+								.setQuantity(quantity)
+								.setUnitPrice(product.getCurrentPrice())
+								.setDeleted(false));
+						totalAmount = Math.addExact(totalAmount, Math.multiplyExact(quantity, product.getCurrentPrice()));
+					}
+					// every step of the workflow up to the sampled status is a comment by the user whose turn it was,
+					// the workflow stops early if nobody can take the next step, e.g. a salesman without sale manager
+					final List<User> saleManagers = saleManagersBySalesman.getOrDefault(author.getId(), List.of());
+					final int steps = sampledStatus == InvoiceStatus.ABORTED
+							? 1 + random.nextInt(WORKFLOW.size() - 2)
+							: WORKFLOW.indexOf(sampledStatus);
+					final List<InvoiceComment> comments = new ArrayList<>();
+					InvoiceStatus status = InvoiceStatus.CREATED;
+					for (int step = 0; step < steps; step++) {
+						final User actor = findActor(status, author, saleManagers, accountants, marketDirectors, random);
+						if (actor == null) break;
+						final InvoiceStatus nextStatus = WORKFLOW.get(step + 1);
+						comments.add(newComment(invoice, actor, status, nextStatus, comments.size()));
+						status = nextStatus;
+					}
+					if (sampledStatus == InvoiceStatus.ABORTED && status == WORKFLOW.get(steps)) {
+						final User actor = findActor(status, author, saleManagers, accountants, marketDirectors, random);
+						if (actor != null) {
+							comments.add(newComment(invoice, actor, status, InvoiceStatus.ABORTED, comments.size()));
+							status = InvoiceStatus.ABORTED;
+						}
+					}
+					// then a few remarks that do not change the status
+					final int remarkCount = random.nextInt(maximumRemarksPerInvoice + 1);
+					for (int remark = 0; remark < remarkCount; remark++) {
+						final User actor = findActor(status, author, saleManagers, accountants, marketDirectors, random);
+						comments.add(newComment(invoice, actor != null ? actor : author, status, status,
+								comments.size()));
+					}
+					chunk.add(invoice
+							.setStatus(status)
+							.setItems(items)
+							.setComments(comments)
+							.setItemCount((long) itemCount)
+							.setTotalAmount(totalAmount));
+				}
+				write(() -> invoiceRepository.saveAll(chunk));
+				LOGGER.info("Generated {} / {} invoices", generated.addAndGet(chunk.size()), invoices - existing);
+			}));
+		}
+		return futures;
+	}
+
+	private void write(@Nonnull Runnable runnable) {
+		writeLock.lock();
+		try {
+			transactionTemplate.executeWithoutResult(status -> runnable.run());
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private @Nonnull List<User> findUsers(@Nonnull Authority authority) {
+		final List<User> users = new ArrayList<>();
+		for (final User user : userRepository.findAll()) {
+			if (!user.getDeleted() && user.getAuthorities().contains(authority)) users.add(user);
+		}
+		users.sort(Comparator.comparing(User::getId));
+		return users;
+	}
+
+	// the sale managers sharing a group with each salesman, by salesman id
+	private @Nonnull Map<Long, List<User>> findSaleManagersBySalesman() {
+		return Objects.requireNonNull(transactionTemplate.execute(status -> {
+			final Map<Long, List<User>> saleManagers = new HashMap<>();
+			for (final Group group : groupRepository.findAll()) {
+				if (group.getDeleted()) continue;
+				for (final User salesman : group.getUsers()) {
+					if (salesman.getDeleted() || !salesman.getAuthorities().contains(Authority.USER_SALESMAN)) continue;
+					for (final User saleManager : group.getUsers()) {
+						if (saleManager.getDeleted()
+								|| !saleManager.getAuthorities().contains(Authority.USER_SALE_MANAGER)) continue;
+						saleManagers.computeIfAbsent(salesman.getId(), id -> new ArrayList<>()).add(saleManager);
+					}
+				}
+			}
+			// in the same order on every run, whatever the order of the groups
+			saleManagers.replaceAll((salesmanId, users) -> users.stream()
+					.distinct()
+					.sorted(Comparator.comparing(User::getId))
+					.toList());
+			return saleManagers;
+		}));
+	}
+
+	/**
+	 * @return The user whose turn it is when the invoice is in the given status, {@code null} if there is nobody.
+	 */
+	private static @Nullable User findActor(@Nonnull InvoiceStatus status, @Nonnull User author,
+			@Nonnull List<User> saleManagers, @Nonnull List<User> accountants, @Nonnull List<User> marketDirectors,
+			@Nonnull SplittableRandom random) {
+		final List<User> users = switch (status) {
+			case CREATED, WAIT_FOR_SALESMAN_RECEIVE, DONE, ABORTED -> List.of(author);
+			case WAIT_FOR_SALES_MANAGER_APPROVAL -> saleManagers;
+			case WAIT_FOR_ACCOUNTANT_APPROVAL, WAIT_FOR_ACCOUNTANT_ISSUES_INVOICE -> accountants;
+			case WAIT_FOR_MARKET_DIRECTOR_APPROVAL -> marketDirectors;
+		};
+		return users.isEmpty() ? null : users.get(random.nextInt(users.size()));
+	}
+
+	private static @Nonnull InvoiceComment newComment(@Nonnull Invoice invoice, @Nonnull User user,
+			@Nonnull InvoiceStatus statusBefore, @Nonnull InvoiceStatus statusAfter, int index) {
+		return new InvoiceComment()
+				.setInvoice(invoice)
+				.setUser(user)
+				.setDisplayComment("Synthetic comment number " + (index + 1))
+				.setStatusBefore(statusBefore)
+				.setStatusAfter(statusAfter)
+				.setDeleted(false);
+	}
+
+	private @Nonnull SplittableRandom random(@Nonnull String table, long first) {
+		return new SplittableRandom(Objects.hash(seed, table, first));
+	}
+
+	private static long exponential(@Nonnull SplittableRandom random, double mean) {
+		return (long) (-Math.log(1.0 - random.nextDouble()) * mean);
+	}
+
+	private static @Nonnull User newUser(@Nonnull String username, @Nonnull String password,
+			@Nonnull Authority authority) {
+		return new User()
+				.setUsername(username)
+				.setPassword(password)
+				.setDisplayName(username)
+				.setAuthorities(Set.of(authority))
+				.setDeleted(false);
+	}
+
+	/**
+	 * Discrete distribution over {@code 0 .. size - 1}, sampled by binary search over the cumulative weights.
+	 */
+	private static final class Distribution {
+		private final @Nonnull double[] cumulative;
+
+		private Distribution(@Nonnull double[] cumulative) {
+			this.cumulative = cumulative;
+		}
+
+		/**
+		 * @param weights Positive weight of each value.
+		 */
+		static @Nonnull Distribution of(@Nonnull double... weights) {
+			final double[] cumulative = new double[weights.length];
+			double sum = 0;
+			for (int index = 0; index < weights.length; index++) cumulative[index] = sum += weights[index];
+			return new Distribution(cumulative);
+		}
+
+		/**
+		 * Zipf distribution: the value of rank {@code k} has a weight of {@code 1 / (k + 1) ^ exponent}.
+		 */
+		static @Nonnull Distribution zipf(int size, double exponent) {
+			final double[] weights = new double[size];
+			for (int index = 0; index < size; index++) weights[index] = 1.0 / Math.pow(index + 1, exponent);
+			return of(weights);
+		}
+
+		int sample(@Nonnull SplittableRandom random) {
+			final double value = random.nextDouble() * cumulative[cumulative.length - 1];
+			final int index = Arrays.binarySearch(cumulative, value);
+			// the first value whose cumulative weight is above the sampled one
+			return Math.min(index >= 0 ? index + 1 : -index - 1, cumulative.length - 1);
+		}
+	}
+}
@@ -24,11 +24,6 @@ public interface EntityMarker<Dto extends DtoMarker> {
 	}
 
 	static <Dto extends DtoMarker> @Nonnull PageDto<Dto> toPageDto(@Nonnull Page<? extends EntityMarker<Dto>> entityPage) {
-		return new PageDto<>(
-				toDtos(entityPage.getContent()),
-				entityPage.getTotalPages(),
-				entityPage.getNumber(),
-				entityPage.getSize()
-		);
+		return PageDto.of(entityPage.map(EntityMarker::toDto));
 	}
 }
@@ -5,14 +5,18 @@
 package io.github.thanhminhmr.tobacco.presistence.model;
 
 import io.github.thanhminhmr.tobacco.dto.model.GroupDto;
+import io.github.thanhminhmr.tobacco.presistence.repository.Projection;
 import jakarta.annotation.Nonnull;
 import jakarta.persistence.*;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Selection;
 import lombok.*;
 import lombok.experimental.Accessors;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Set;
 
 @Accessors(chain = true)
@@ -22,11 +26,38 @@ import java.util.Set;
 @Setter
 @ToString
 @Entity
-@Table(name = "groups")
+@Table(name = "groups", indexes = {
+		@Index(name = "idx_groups_deleted_created_at", columnList = "deleted, created_at"),
+		@Index(name = "idx_groups_created_at", columnList = "created_at")
+})
 public class Group implements EntityMarker<GroupDto> {
+	public static final @Nonnull Projection<Group, GroupDto> PROJECTION = new Projection<>() {
+		@Override
+		public @Nonnull List<Selection<?>> select(@Nonnull From<?, Group> from) {
+			return List.of(
+					from.get("id"),
+					from.get("displayName"),
+					from.get("deleted"),
+					from.get("createdAt"),
+					from.get("updatedAt")
+			);
+		}
+
+		@Override
+		public @Nonnull GroupDto map(@Nonnull Tuple tuple, int offset) {
+			return new GroupDto(
+					tuple.get(offset, Long.class),
+					tuple.get(offset + 1, String.class),
+					tuple.get(offset + 2, Boolean.class),
+					tuple.get(offset + 3, Instant.class),
+					tuple.get(offset + 4, Instant.class)
+			);
+		}
+	};
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
-	@Column(name = "id", nullable = false, insertable = false, updatable = false)
+	@TableId("groups")
+	@Column(name = "id", nullable = false, updatable = false)
 	private Long id;
 
 	@Column(name = "display_name", nullable = false)
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.model;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Settings shared by the {@link TableId} of every entity. Each entity has one row in the generator table, holding the
+ * next id to hand out, and {@link TableIdGenerator} reserves {@link #ALLOCATION_SIZE} ids per round-trip to it. Unlike
+ * identity columns, ids are known before the insert, so Hibernate is free to batch the inserts.
+ */
+public final class IdGenerators {
+	private IdGenerators() {
+	}
+
+	public static final @Nonnull String TABLE = "id_generators";
+	public static final @Nonnull String NAME_COLUMN = "name";
+	public static final @Nonnull String VALUE_COLUMN = "next_value";
+	public static final int ALLOCATION_SIZE = 50;
+}
@@ -5,14 +5,21 @@
 package io.github.thanhminhmr.tobacco.presistence.model;
 
 import io.github.thanhminhmr.tobacco.dto.model.InvoiceDto;
+import io.github.thanhminhmr.tobacco.presistence.repository.Projection;
 import jakarta.annotation.Nonnull;
 import jakarta.persistence.*;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Selection;
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 @Accessors(chain = true)
@@ -22,11 +29,54 @@ import java.util.List;
 @Setter
 @ToString
 @Entity
-@Table(name = "invoices")
+@Table(name = "invoices", indexes = {
+		@Index(name = "idx_invoices_author_id_deleted_created_at", columnList = "author_id, deleted, created_at"),
+		@Index(name = "idx_invoices_deleted_created_at", columnList = "deleted, created_at"),
+		@Index(name = "idx_invoices_created_at", columnList = "created_at"),
+		@Index(name = "idx_invoices_updated_at", columnList = "updated_at"),
+		@Index(name = "idx_invoices_status", columnList = "status"),
+		@Index(name = "idx_invoices_item_count", columnList = "item_count"),
+		@Index(name = "idx_invoices_total_amount", columnList = "total_amount")
+})
+@DynamicUpdate
 public class Invoice implements EntityMarker<InvoiceDto> {
+	public static final @Nonnull Projection<Invoice, InvoiceDto> PROJECTION = new Projection<>() {
+		@Override
+		public @Nonnull List<Selection<?>> select(@Nonnull From<?, Invoice> from) {
+			final Join<Invoice, User> author = from.join("author");
+			final List<Selection<?>> selections = new ArrayList<>(List.of(
+					from.get("id"),
+					from.get("displayDescription"),
+					from.get("status"),
+					from.get("itemCount"),
+					from.get("totalAmount"),
+					from.get("deleted"),
+					from.get("createdAt"),
+					from.get("updatedAt")
+			));
+			selections.addAll(User.PROJECTION.select(author));
+			return selections;
+		}
+
+		@Override
+		public @Nonnull InvoiceDto map(@Nonnull Tuple tuple, int offset) {
+			return new InvoiceDto(
+					tuple.get(offset, Long.class),
+					User.PROJECTION.map(tuple, offset + 8),
+					tuple.get(offset + 1, String.class),
+					tuple.get(offset + 2, InvoiceStatus.class),
+					tuple.get(offset + 3, Long.class),
+					tuple.get(offset + 4, Long.class),
+					tuple.get(offset + 5, Boolean.class),
+					tuple.get(offset + 6, Instant.class),
+					tuple.get(offset + 7, Instant.class)
+			);
+		}
+	};
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
-	@Column(name = "id", nullable = false, insertable = false, updatable = false)
+	@TableId("invoices")
+	@Column(name = "id", nullable = false, updatable = false)
 	private Long id;
 
 	@ToString.Exclude
@@ -41,6 +91,15 @@ public class Invoice implements EntityMarker<InvoiceDto> {
 	@Column(name = "status", nullable = false)
 	private InvoiceStatus status;
 
+	// denormalized from the items that are not deleted, kept up to date by InvoiceRepository.addToTotals
+	@ColumnDefault("0")
+	@Column(name = "item_count", nullable = false)
+	private Long itemCount;
+
+	@ColumnDefault("0")
+	@Column(name = "total_amount", nullable = false)
+	private Long totalAmount;
+
 	@ToString.Exclude
 	@OneToMany(mappedBy = "invoice", cascade = CascadeType.ALL, orphanRemoval = true)
 	private List<InvoiceItem> items;
@@ -52,6 +111,12 @@ public class Invoice implements EntityMarker<InvoiceDto> {
 	@Column(name = "deleted", nullable = false)
 	private Boolean deleted;
 
+	// bumped on every update, including the bulk ones in InvoiceRepository
+	@Version
+	@ColumnDefault("0")
+	@Column(name = "version", nullable = false)
+	private Long version;
+
 	@CreationTimestamp
 	@Column(name = "created_at", nullable = false, updatable = false)
 	@Temporal(TemporalType.TIMESTAMP)
@@ -69,6 +134,8 @@ public class Invoice implements EntityMarker<InvoiceDto> {
 				author.toDto(),
 				displayDescription,
 				status,
+				itemCount,
+				totalAmount,
 				deleted,
 				createdAt,
 				updatedAt
@@ -5,14 +5,20 @@
 package io.github.thanhminhmr.tobacco.presistence.model;
 
 import io.github.thanhminhmr.tobacco.dto.model.InvoiceCommentDto;
+import io.github.thanhminhmr.tobacco.presistence.repository.Projection;
 import jakarta.annotation.Nonnull;
 import jakarta.persistence.*;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Selection;
 import lombok.*;
 import lombok.experimental.Accessors;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 @Accessors(chain = true)
 @AllArgsConstructor
@@ -21,11 +27,46 @@ import java.time.Instant;
 @Setter
 @ToString
 @Entity
-@Table(name = "invoice_comments")
+@Table(name = "invoice_comments", indexes = {
+		@Index(name = "idx_invoice_comments_invoice_id", columnList = "invoice_id"),
+		@Index(name = "idx_invoice_comments_user_id", columnList = "user_id")
+})
 public class InvoiceComment implements EntityMarker<InvoiceCommentDto> {
+	public static final @Nonnull Projection<InvoiceComment, InvoiceCommentDto> PROJECTION = new Projection<>() {
+		@Override
+		public @Nonnull List<Selection<?>> select(@Nonnull From<?, InvoiceComment> from) {
+			final Join<InvoiceComment, User> user = from.join("user");
+			final List<Selection<?>> selections = new ArrayList<>(List.of(
+					from.get("id"),
+					from.get("displayComment"),
+					from.get("statusBefore"),
+					from.get("statusAfter"),
+					from.get("deleted"),
+					from.get("createdAt"),
+					from.get("updatedAt")
+			));
+			selections.addAll(User.PROJECTION.select(user));
+			return selections;
+		}
+
+		@Override
+		public @Nonnull InvoiceCommentDto map(@Nonnull Tuple tuple, int offset) {
+			return new InvoiceCommentDto(
+					tuple.get(offset, Long.class),
+					User.PROJECTION.map(tuple, offset + 7),
+					tuple.get(offset + 1, String.class),
+					tuple.get(offset + 2, InvoiceStatus.class),
+					tuple.get(offset + 3, InvoiceStatus.class),
+					tuple.get(offset + 4, Boolean.class),
+					tuple.get(offset + 5, Instant.class),
+					tuple.get(offset + 6, Instant.class)
+			);
+		}
+	};
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
-	@Column(name = "id", nullable = false, insertable = false, updatable = false)
+	@TableId("invoice_comments")
+	@Column(name = "id", nullable = false, updatable = false)
 	private Long id;
 
 	@ToString.Exclude
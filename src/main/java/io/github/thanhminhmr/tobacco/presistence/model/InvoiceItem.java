@@ -5,14 +5,20 @@
 package io.github.thanhminhmr.tobacco.presistence.model;
 
 import io.github.thanhminhmr.tobacco.dto.model.InvoiceItemDto;
+import io.github.thanhminhmr.tobacco.presistence.repository.Projection;
 import jakarta.annotation.Nonnull;
 import jakarta.persistence.*;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Selection;
 import lombok.*;
 import lombok.experimental.Accessors;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 @Accessors(chain = true)
 @AllArgsConstructor
@@ -21,11 +27,44 @@ import java.time.Instant;
 @Setter
 @ToString
 @Entity
-@Table(name = "invoice_items")
+@Table(name = "invoice_items", indexes = {
+		@Index(name = "idx_invoice_items_invoice_id", columnList = "invoice_id"),
+		@Index(name = "idx_invoice_items_product_id", columnList = "product_id")
+})
 public class InvoiceItem implements EntityMarker<InvoiceItemDto> {
+	public static final @Nonnull Projection<InvoiceItem, InvoiceItemDto> PROJECTION = new Projection<>() {
+		@Override
+		public @Nonnull List<Selection<?>> select(@Nonnull From<?, InvoiceItem> from) {
+			final Join<InvoiceItem, Product> product = from.join("product");
+			final List<Selection<?>> selections = new ArrayList<>(List.of(
+					from.get("id"),
+					from.get("unitPrice"),
+					from.get("quantity"),
+					from.get("deleted"),
+					from.get("createdAt"),
+					from.get("updatedAt")
+			));
+			selections.addAll(Product.PROJECTION.select(product));
+			return selections;
+		}
+
+		@Override
+		public @Nonnull InvoiceItemDto map(@Nonnull Tuple tuple, int offset) {
+			return new InvoiceItemDto(
+					tuple.get(offset, Long.class),
+					Product.PROJECTION.map(tuple, offset + 6),
+					tuple.get(offset + 1, Long.class),
+					tuple.get(offset + 2, Long.class),
+					tuple.get(offset + 3, Boolean.class),
+					tuple.get(offset + 4, Instant.class),
+					tuple.get(offset + 5, Instant.class)
+			);
+		}
+	};
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
-	@Column(name = "id", nullable = false, insertable = false, updatable = false)
+	@TableId("invoice_items")
+	@Column(name = "id", nullable = false, updatable = false)
 	private Long id;
 
 	@ToString.Exclude
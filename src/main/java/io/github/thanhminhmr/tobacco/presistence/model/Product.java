@@ -5,14 +5,21 @@
 package io.github.thanhminhmr.tobacco.presistence.model;
 
 import io.github.thanhminhmr.tobacco.dto.model.ProductDto;
+import io.github.thanhminhmr.tobacco.presistence.repository.Projection;
 import jakarta.annotation.Nonnull;
 import jakarta.persistence.*;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Selection;
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
+import java.util.List;
 
 @Accessors(chain = true)
 @AllArgsConstructor
@@ -21,11 +28,49 @@ import java.time.Instant;
 @Setter
 @ToString
 @Entity
-@Table(name = "products")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "products", indexes = {
+		@Index(name = "idx_products_deleted_created_at", columnList = "deleted, created_at"),
+		@Index(name = "idx_products_created_at", columnList = "created_at"),
+		@Index(name = "idx_products_current_price", columnList = "current_price")
+})
 public class Product implements EntityMarker<ProductDto> {
+	public static final @Nonnull Projection<Product, ProductDto> PROJECTION = new Projection<>() {
+		@Override
+		public @Nonnull List<Selection<?>> select(@Nonnull From<?, Product> from) {
+			return List.of(
+					from.get("id"),
+					from.get("displayName"),
+					from.get("displayDescription"),
+					from.get("displayUnit"),
+					from.get("currentPrice"),
+					from.get("deleted"),
+					from.get("version"),
+					from.get("createdAt"),
+					from.get("updatedAt")
+			);
+		}
+
+		@Override
+		public @Nonnull ProductDto map(@Nonnull Tuple tuple, int offset) {
+			return new ProductDto(
+					tuple.get(offset, Long.class),
+					tuple.get(offset + 1, String.class),
+					tuple.get(offset + 2, String.class),
+					tuple.get(offset + 3, String.class),
+					tuple.get(offset + 4, Long.class),
+					tuple.get(offset + 5, Boolean.class),
+					tuple.get(offset + 6, Long.class),
+					tuple.get(offset + 7, Instant.class),
+					tuple.get(offset + 8, Instant.class)
+			);
+		}
+	};
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
-	@Column(name = "id", nullable = false, insertable = false, updatable = false)
+	@TableId("products")
+	@Column(name = "id", nullable = false, updatable = false)
 	private Long id;
 
 	@Column(name = "display_name", nullable = false)
@@ -43,6 +88,11 @@ public class Product implements EntityMarker<ProductDto> {
 	@Column(name = "deleted", nullable = false)
 	private Boolean deleted;
 
+	@Version
+	@ColumnDefault("0")
+	@Column(name = "version", nullable = false)
+	private Long version;
+
 	@CreationTimestamp
 	@Column(name = "created_at", nullable = false, updatable = false)
 	@Temporal(TemporalType.TIMESTAMP)
@@ -62,6 +112,7 @@ public class Product implements EntityMarker<ProductDto> {
 				displayUnit,
 				currentPrice,
 				deleted,
+				version,
 				createdAt,
 				updatedAt
 		);
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The id is taken from the row of the {@link IdGenerators#TABLE} table with this name, see {@link TableIdGenerator}.
+ */
+@IdGeneratorType(TableIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TableId {
+	/**
+	 * @return Name of the generator row, usually the name of the table.
+	 */
+	String value();
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.model;
+
+import jakarta.annotation.Nonnull;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerationException;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reserves blocks of {@link IdGenerators#ALLOCATION_SIZE} ids from a row of the {@link IdGenerators#TABLE} table.
+ * <p>
+ * Unlike Hibernate's table generator, the block is reserved on the connection of the session, inside its transaction.
+ * SQLite has a single writer: a reservation in a transaction of its own, on a second connection, would wait for the
+ * lock held by the calling transaction, or invalidate its snapshot. The price is that a reserved block is only really
+ * reserved once the transaction commits, so until then it is only used by the session that reserved it. What is left
+ * of it after the commit is shared with the other sessions; after a rollback it is dropped, the row is back to where
+ * it was and the same block will be reserved again.
+ */
+public final class TableIdGenerator implements IdentifierGenerator {
+	private final @Nonnull String sql;
+	private final @Nonnull String name;
+
+	// committed blocks, as {next, limit}, shared by every session
+	private final @Nonnull Deque<long[]> committedBlocks = new ArrayDeque<>();
+	// blocks reserved by a transaction that is not over yet, by session
+	private final @Nonnull Map<SharedSessionContractImplementor, long[]> pendingBlocks = new ConcurrentHashMap<>();
+
+	public TableIdGenerator(@Nonnull TableId tableId, @Nonnull Member member,
+			@Nonnull CustomIdGeneratorCreationContext context) {
+		this.sql = "update " + IdGenerators.TABLE + " set " + IdGenerators.VALUE_COLUMN + " = "
+				+ IdGenerators.VALUE_COLUMN + " + " + IdGenerators.ALLOCATION_SIZE + " where "
+				+ IdGenerators.NAME_COLUMN + " = ? returning " + IdGenerators.VALUE_COLUMN;
+		this.name = tableId.value();
+	}
+
+	@Override
+	public @Nonnull Object generate(@Nonnull SharedSessionContractImplementor session, @Nonnull Object object) {
+		final long[] pendingBlock = pendingBlocks.get(session);
+		if (pendingBlock != null && pendingBlock[0] < pendingBlock[1]) return pendingBlock[0]++;
+		synchronized (committedBlocks) {
+			final long[] committedBlock = committedBlocks.peekFirst();
+			if (committedBlock != null) {
+				final long id = committedBlock[0]++;
+				if (committedBlock[0] >= committedBlock[1]) committedBlocks.removeFirst();
+				return id;
+			}
+		}
+		final long limit = reserve(session);
+		final long[] block = {limit - IdGenerators.ALLOCATION_SIZE, limit};
+		if (!session.isTransactionInProgress()) {
+			// auto-commit, the block is already committed
+			final long id = block[0]++;
+			release(block);
+			return id;
+		}
+		if (pendingBlock == null) {
+			session.asEventSource().getActionQueue().registerProcess((success, completedSession) -> {
+				final long[] completedBlock = pendingBlocks.remove(completedSession);
+				if (success && completedBlock != null) release(completedBlock);
+			});
+		}
+		pendingBlocks.put(session, block);
+		return block[0]++;
+	}
+
+	private void release(@Nonnull long[] block) {
+		if (block[0] >= block[1]) return;
+		synchronized (committedBlocks) {
+			committedBlocks.addLast(block);
+		}
+	}
+
+	private long reserve(@Nonnull SharedSessionContractImplementor session) {
+		final JdbcCoordinator coordinator = session.getJdbcCoordinator();
+		final PreparedStatement statement = coordinator.getStatementPreparer().prepareStatement(sql);
+		try {
+			statement.setString(1, name);
+			final ResultSet resultSet = coordinator.getResultSetReturn().extract(statement, sql);
+			try {
+				if (!resultSet.next()) {
+					throw new IdentifierGenerationException("Missing id generator row: " + name);
+				}
+				return resultSet.getLong(1);
+			} finally {
+				coordinator.getLogicalConnection().getResourceRegistry().release(resultSet, statement);
+			}
+		} catch (final SQLException exception) {
+			throw session.getJdbcServices().getSqlExceptionHelper()
+					.convert(exception, "Could not reserve ids from id generator " + name, sql);
+		} finally {
+			coordinator.getLogicalConnection().getResourceRegistry().release(statement);
+			coordinator.afterStatementExecution();
+		}
+	}
+}
@@ -5,15 +5,21 @@
 package io.github.thanhminhmr.tobacco.presistence.model;
 
 import io.github.thanhminhmr.tobacco.dto.model.UserDto;
+import io.github.thanhminhmr.tobacco.presistence.repository.Projection;
 import jakarta.annotation.Nonnull;
 import jakarta.persistence.*;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Selection;
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Set;
 
 @Accessors(chain = true)
@@ -23,11 +29,43 @@ import java.util.Set;
 @Setter
 @ToString
 @Entity
-@Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "users", indexes = {
+		@Index(name = "idx_users_deleted_created_at", columnList = "deleted, created_at"),
+		@Index(name = "idx_users_created_at", columnList = "created_at")
+})
 public class User implements EntityMarker<UserDto>, UserDetails {
+	public static final @Nonnull Projection<User, UserDto> PROJECTION = new Projection<>() {
+		@Override
+		public @Nonnull List<Selection<?>> select(@Nonnull From<?, User> from) {
+			return List.of(
+					from.get("id"),
+					from.get("username"),
+					from.get("displayName"),
+					from.get("deleted"),
+					from.get("createdAt"),
+					from.get("updatedAt")
+			);
+		}
+
+		@Override
+		public @Nonnull UserDto map(@Nonnull Tuple tuple, int offset) {
+			return new UserDto(
+					tuple.get(offset, Long.class),
+					tuple.get(offset + 1, String.class),
+					tuple.get(offset + 2, String.class),
+					tuple.get(offset + 3, Boolean.class),
+					tuple.get(offset + 4, Instant.class),
+					tuple.get(offset + 5, Instant.class),
+					null
+			);
+		}
+	};
+
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
-	@Column(name = "id", nullable = false, insertable = false, updatable = false)
+	@TableId("users")
+	@Column(name = "id", nullable = false, updatable = false)
 	private Long id;
 
 	@Column(name = "username", nullable = false, unique = true, updatable = false)
@@ -55,6 +93,7 @@ public class User implements EntityMarker<UserDto>, UserDetails {
 
 
 	@ElementCollection(targetClass = Authority.class, fetch = FetchType.EAGER)
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 	@CollectionTable(name = "users_authorities", joinColumns = @JoinColumn(name = "user_id"))
 	@Enumerated(EnumType.STRING)
 	@Column(name = "authority", nullable = false)
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.repository;
+
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Common base of every repository, implemented by {@link BaseRepositoryImpl}.
+ *
+ * @param <T> Entity type.
+ * @param <ID> Id type.
+ */
+@NoRepositoryBean
+public interface BaseRepository<T, ID> extends JpaRepository<T, ID>, JpaSpecificationExecutor<T> {
+	<Dto extends DtoMarker> @Nonnull Optional<Dto> findProjectedById(@Nonnull ID id,
+			@Nonnull Projection<T, Dto> projection);
+
+	<Dto extends DtoMarker> @Nonnull List<Dto> findProjectedList(@Nullable Specification<T> spec,
+			@Nonnull Sort sort, @Nonnull Projection<T, Dto> projection);
+
+	<Dto extends DtoMarker> @Nonnull Page<Dto> findProjectedPage(@Nullable Specification<T> spec,
+			@Nonnull Pageable pageable, @Nonnull Projection<T, Dto> projection);
+
+	<Dto extends DtoMarker> @Nonnull Slice<Dto> findProjectedSlice(@Nullable Specification<T> spec,
+			@Nonnull Pageable pageable, @Nonnull Projection<T, Dto> projection);
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.repository;
+
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+public class BaseRepositoryImpl<T, ID> extends SimpleJpaRepository<T, ID> implements BaseRepository<T, ID> {
+	private final @Nonnull JpaEntityInformation<T, ?> entityInformation;
+	private final @Nonnull EntityManager entityManager;
+
+	public BaseRepositoryImpl(@Nonnull JpaEntityInformation<T, ?> entityInformation,
+			@Nonnull EntityManager entityManager) {
+		super(entityInformation, entityManager);
+		this.entityInformation = entityInformation;
+		this.entityManager = entityManager;
+	}
+
+	@Override
+	public <Dto extends DtoMarker> @Nonnull Optional<Dto> findProjectedById(@Nonnull ID id,
+			@Nonnull Projection<T, Dto> projection) {
+		final String idAttribute = Objects.requireNonNull(entityInformation.getIdAttribute()).getName();
+		final List<Dto> dtos = findProjectedList((root, query, builder) -> builder.equal(root.get(idAttribute), id),
+				Sort.unsorted(), projection);
+		return dtos.isEmpty() ? Optional.empty() : Optional.of(dtos.get(0));
+	}
+
+	@Override
+	public <Dto extends DtoMarker> @Nonnull List<Dto> findProjectedList(@Nullable Specification<T> spec,
+			@Nonnull Sort sort, @Nonnull Projection<T, Dto> projection) {
+		return map(getProjectedQuery(spec, sort, projection).getResultList(), projection);
+	}
+
+	@Override
+	public <Dto extends DtoMarker> @Nonnull Page<Dto> findProjectedPage(@Nullable Specification<T> spec,
+			@Nonnull Pageable pageable, @Nonnull Projection<T, Dto> projection) {
+		final TypedQuery<Tuple> query = getProjectedQuery(spec, pageable.getSort(), projection);
+		if (pageable.isUnpaged()) return new PageImpl<>(map(query.getResultList(), projection));
+		query.setFirstResult((int) pageable.getOffset());
+		query.setMaxResults(pageable.getPageSize());
+		return PageableExecutionUtils.getPage(map(query.getResultList(), projection), pageable, () -> count(spec));
+	}
+
+	@Override
+	public <Dto extends DtoMarker> @Nonnull Slice<Dto> findProjectedSlice(@Nullable Specification<T> spec,
+			@Nonnull Pageable pageable, @Nonnull Projection<T, Dto> projection) {
+		final TypedQuery<Tuple> query = getProjectedQuery(spec, pageable.getSort(), projection);
+		if (pageable.isUnpaged()) return new SliceImpl<>(map(query.getResultList(), projection), pageable, false);
+		query.setFirstResult((int) pageable.getOffset());
+		query.setMaxResults(pageable.getPageSize() + 1);
+		final List<Dto> content = map(query.getResultList(), projection);
+		final boolean hasNext = content.size() > pageable.getPageSize();
+		return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+	}
+
+	private @Nonnull TypedQuery<Tuple> getProjectedQuery(@Nullable Specification<T> spec, @Nonnull Sort sort,
+			@Nonnull Projection<T, ?> projection) {
+		final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		final CriteriaQuery<Tuple> query = builder.createTupleQuery();
+		final Root<T> root = query.from(getDomainClass());
+		if (spec != null) {
+			final Predicate predicate = spec.toPredicate(root, query, builder);
+			if (predicate != null) query.where(predicate);
+		}
+		query.multiselect(projection.select(root));
+		if (sort.isSorted()) query.orderBy(QueryUtils.toOrders(sort, root, builder));
+		return entityManager.createQuery(query);
+	}
+
+	private static <Dto extends DtoMarker> @Nonnull List<Dto> map(@Nonnull List<Tuple> tuples,
+			@Nonnull Projection<?, Dto> projection) {
+		final List<Dto> dtos = new ArrayList<>(tuples.size());
+		for (final Tuple tuple : tuples) dtos.add(projection.map(tuple, 0));
+		return dtos;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.repository;
+
+import io.github.thanhminhmr.tobacco.util.ExpiringCache;
+import jakarta.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Approximate row counts for list endpoints, for clients that only need a rough number of pages. Counts are cached
+ * for a short time, keyed by the specification itself: list specifications are records, so two requests with the
+ * same filters share the same count. A specification holding anything else than filter values, e.g. the current
+ * user, gives its own key as a {@link KeyedSpecification}.
+ */
+@Component
+public final class CountEstimator {
+	private final @Nonnull ExpiringCache<Object, Long> counts;
+
+	public CountEstimator(
+			@Value("${tobacco.count-estimator.maximum-size:1000}") int maximumSize,
+			@Value("${tobacco.count-estimator.time-to-live:30s}") @Nonnull Duration timeToLive) {
+		this.counts = new ExpiringCache<>(maximumSize, timeToLive);
+	}
+
+	public <Entity> long estimate(@Nonnull BaseRepository<Entity, ?> repository,
+			@Nonnull Specification<Entity> specification) {
+		final Object key = specification instanceof KeyedSpecification<?> keyedSpecification
+				? keyedSpecification.countKey()
+				: specification;
+		final Long cached = counts.get(key);
+		if (cached != null) return cached;
+		final long count = repository.count(specification);
+		counts.put(key, count);
+		return count;
+	}
+
+
+	public interface KeyedSpecification<Entity> extends Specification<Entity> {
+		/**
+		 * @return Plain values, equal for two specifications that match the same rows, and different from the keys
+		 * of other specifications.
+		 */
+		@Nonnull Object countKey();
+	}
+}
@@ -5,10 +5,21 @@
 package io.github.thanhminhmr.tobacco.presistence.repository;
 
 import io.github.thanhminhmr.tobacco.presistence.model.Group;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import jakarta.annotation.Nonnull;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface GroupRepository extends JpaRepository<Group, Long>, JpaSpecificationExecutor<Group> {
+public interface GroupRepository extends BaseRepository<Group, Long> {
+	@Query("select g.id as groupId, u.id as userId from Group g join g.users u")
+	@Nonnull List<Membership> findAllMemberships();
+
+
+	interface Membership {
+		@Nonnull Long getGroupId();
+
+		@Nonnull Long getUserId();
+	}
 }
@@ -5,9 +5,32 @@
 package io.github.thanhminhmr.tobacco.presistence.repository;
 
 import io.github.thanhminhmr.tobacco.presistence.model.InvoiceComment;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+
 @Repository
-public interface InvoiceCommentRepository extends JpaRepository<InvoiceComment, Long> {
+public interface InvoiceCommentRepository extends BaseRepository<InvoiceComment, Long> {
+	/**
+	 * @param invoiceId Invoice id.
+	 * @return What changes whenever the comments of the invoice, or their users, change.
+	 */
+	@Query("select count(invoiceComment) as commentCount, max(invoiceComment.updatedAt) as lastUpdatedAt,"
+			+ " max(commentUser.updatedAt) as lastUserUpdatedAt"
+			+ " from InvoiceComment invoiceComment join invoiceComment.user commentUser"
+			+ " where invoiceComment.invoice.id = :invoiceId")
+	@Nonnull CommentsRevision findRevisionByInvoiceId(@Param("invoiceId") long invoiceId);
+
+
+	interface CommentsRevision {
+		@Nonnull Long getCommentCount();
+
+		@Nullable Instant getLastUpdatedAt();
+
+		@Nullable Instant getLastUserUpdatedAt();
+	}
 }
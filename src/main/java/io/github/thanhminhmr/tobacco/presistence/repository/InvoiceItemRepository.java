@@ -5,9 +5,45 @@
 package io.github.thanhminhmr.tobacco.presistence.repository;
 
 import io.github.thanhminhmr.tobacco.presistence.model.InvoiceItem;
-import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+
 @Repository
-public interface InvoiceItemRepository extends JpaRepository<InvoiceItem, Long> {
+public interface InvoiceItemRepository extends BaseRepository<InvoiceItem, Long> {
+	/**
+	 * Mark an item as deleted, unless it already is.
+	 *
+	 * @param itemId Item id.
+	 * @param updatedAt New modification time of the item, bulk updates skip {@code @UpdateTimestamp}.
+	 * @return {@code 1} if the item was deleted by this call, {@code 0} otherwise.
+	 */
+	@Modifying
+	@Query("update InvoiceItem invoiceItem set invoiceItem.deleted = true, invoiceItem.updatedAt = :updatedAt"
+			+ " where invoiceItem.id = :itemId and invoiceItem.deleted = false")
+	int softDelete(@Param("itemId") long itemId, @Param("updatedAt") @Nonnull Instant updatedAt);
+
+	/**
+	 * @param invoiceId Invoice id.
+	 * @return What changes whenever the items of the invoice, or their products, change.
+	 */
+	@Query("select count(invoiceItem) as itemCount, max(invoiceItem.updatedAt) as lastUpdatedAt,"
+			+ " max(product.updatedAt) as lastProductUpdatedAt"
+			+ " from InvoiceItem invoiceItem join invoiceItem.product product"
+			+ " where invoiceItem.invoice.id = :invoiceId")
+	@Nonnull ItemsRevision findRevisionByInvoiceId(@Param("invoiceId") long invoiceId);
+
+
+	interface ItemsRevision {
+		@Nonnull Long getItemCount();
+
+		@Nullable Instant getLastUpdatedAt();
+
+		@Nullable Instant getLastProductUpdatedAt();
+	}
 }
@@ -5,10 +5,73 @@
 package io.github.thanhminhmr.tobacco.presistence.repository;
 
 import io.github.thanhminhmr.tobacco.presistence.model.Invoice;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import io.github.thanhminhmr.tobacco.presistence.model.InvoiceStatus;
+import jakarta.annotation.Nonnull;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Optional;
+
 @Repository
-public interface InvoiceRepository extends JpaRepository<Invoice, Long>, JpaSpecificationExecutor<Invoice> {
+public interface InvoiceRepository extends BaseRepository<Invoice, Long> {
+	@Query("select invoice.author.id from Invoice invoice where invoice.id = :invoiceId")
+	@Nonnull Optional<Long> findAuthorIdById(@Param("invoiceId") long invoiceId);
+
+	@Query("select author.id as authorId, invoice.status as status, invoice.version as version,"
+			+ " invoice.updatedAt as updatedAt, author.updatedAt as authorUpdatedAt"
+			+ " from Invoice invoice join invoice.author author where invoice.id = :invoiceId")
+	@Nonnull Optional<InvoiceState> findStateById(@Param("invoiceId") long invoiceId);
+
+	/**
+	 * Change the status of an invoice, only if neither its status nor its version changed since they were read.
+	 *
+	 * @param invoiceId Invoice id.
+	 * @param statusBefore Status that was read.
+	 * @param version Version that was read.
+	 * @param statusAfter New status.
+	 * @param updatedAt New modification time of the invoice, bulk updates skip {@code @UpdateTimestamp}.
+	 * @return Number of updated invoices, zero if the invoice was changed in the meantime.
+	 */
+	@Modifying
+	@Query("update Invoice invoice set invoice.status = :statusAfter, invoice.version = invoice.version + 1,"
+			+ " invoice.updatedAt = :updatedAt"
+			+ " where invoice.id = :invoiceId and invoice.status = :statusBefore and invoice.version = :version")
+	int transitionStatus(@Param("invoiceId") long invoiceId, @Param("statusBefore") @Nonnull InvoiceStatus statusBefore,
+			@Param("version") long version, @Param("statusAfter") @Nonnull InvoiceStatus statusAfter,
+			@Param("updatedAt") @Nonnull Instant updatedAt);
+
+	/**
+	 * Atomically add to the denormalized item count and total amount of an invoice, only if its items can still be
+	 * changed, i.e. it is still {@link InvoiceStatus#CREATED}. Must be called in the same transaction that creates or
+	 * deletes the items, which has to be rolled back if nothing was updated.
+	 *
+	 * @param invoiceId Invoice id.
+	 * @param itemCount Number of items added, negative if removed.
+	 * @param amount Sum of {@code unitPrice * quantity} of those items, negative if removed.
+	 * @param updatedAt New modification time of the invoice, bulk updates skip {@code @UpdateTimestamp}.
+	 * @return Number of updated invoices, zero if the invoice is gone or no longer {@code CREATED}.
+	 */
+	@Modifying
+	@Query("update Invoice invoice set invoice.itemCount = invoice.itemCount + :itemCount,"
+			+ " invoice.totalAmount = invoice.totalAmount + :amount, invoice.version = invoice.version + 1,"
+			+ " invoice.updatedAt = :updatedAt"
+			+ " where invoice.id = :invoiceId"
+			+ " and invoice.status = io.github.thanhminhmr.tobacco.presistence.model.InvoiceStatus.CREATED")
+	int addToTotals(@Param("invoiceId") long invoiceId, @Param("itemCount") long itemCount,
+			@Param("amount") long amount, @Param("updatedAt") @Nonnull Instant updatedAt);
+
+	interface InvoiceState {
+		@Nonnull Long getAuthorId();
+
+		@Nonnull InvoiceStatus getStatus();
+
+		@Nonnull Long getVersion();
+
+		@Nonnull Instant getUpdatedAt();
+
+		@Nonnull Instant getAuthorUpdatedAt();
+	}
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.repository;
+
+import io.github.thanhminhmr.tobacco.dto.rest.KeysetCursor;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Keyset (cursor) paging. Lists are ordered by {@code (createdAt, id)}, and a page starts strictly after the position
+ * of the last element of the previous one, given by a {@link KeysetCursor}, so page N costs the same as page 1.
+ */
+public final class Keyset {
+	public static final @Nonnull Sort SORT = Sort.by("createdAt", "id");
+
+	private Keyset() {
+	}
+
+	/**
+	 * Restrict a list specification to the page after the given cursor.
+	 *
+	 * @param specification List specification.
+	 * @param cursor Position of the last element of the previous page, {@code null} for the first page.
+	 * @return The restricted specification.
+	 */
+	public static <Entity> @Nonnull Specification<Entity> after(@Nonnull Specification<Entity> specification,
+			@Nullable KeysetCursor cursor) {
+		if (cursor == null) return specification;
+		return specification.and((root, query, builder) -> builder.or(
+				builder.greaterThan(root.get("createdAt"), cursor.createdAt()),
+				builder.and(
+						builder.equal(root.get("createdAt"), cursor.createdAt()),
+						builder.greaterThan(root.get("id"), cursor.id())
+				)
+		));
+	}
+
+	public static @Nonnull Pageable pageRequest(int pageSize) {
+		return PageRequest.of(0, pageSize, SORT);
+	}
+}
@@ -5,10 +5,24 @@
 package io.github.thanhminhmr.tobacco.presistence.repository;
 
 import io.github.thanhminhmr.tobacco.presistence.model.Product;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import jakarta.annotation.Nonnull;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Optional;
+
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends BaseRepository<Product, Long> {
+	@Query("select product.version as version, product.updatedAt as updatedAt"
+			+ " from Product product where product.id = :productId")
+	@Nonnull Optional<ProductRevision> findRevisionById(@Param("productId") long productId);
+
+
+	interface ProductRevision {
+		@Nonnull Long getVersion();
+
+		@Nonnull Instant getUpdatedAt();
+	}
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.repository;
+
+import io.github.thanhminhmr.tobacco.dto.model.DtoMarker;
+import jakarta.annotation.Nonnull;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Selection;
+
+import java.util.List;
+
+/**
+ * Maps rows of an entity straight to its DTO at query time. Only the columns the DTO needs are selected and no
+ * managed entity is ever built, so nothing is added to the persistence context.
+ * <p>
+ * A projection can embed another one, e.g. the author of an invoice: it selects its own columns first, then the
+ * columns of the embedded projection, and maps the embedded DTO from the matching offset.
+ *
+ * @param <Entity> Entity type.
+ * @param <Dto> DTO type.
+ */
+public interface Projection<Entity, Dto extends DtoMarker> {
+	/**
+	 * @param from Root or join of the entity.
+	 * @return Selected columns, in the order {@link #map(Tuple, int)} reads them.
+	 */
+	@Nonnull List<Selection<?>> select(@Nonnull From<?, Entity> from);
+
+	/**
+	 * @param tuple Result row.
+	 * @param offset Index of the first column selected by this projection.
+	 * @return The DTO.
+	 */
+	@Nonnull Dto map(@Nonnull Tuple tuple, int offset);
+}
@@ -7,12 +7,10 @@ package io.github.thanhminhmr.tobacco.presistence.repository;
 import io.github.thanhminhmr.tobacco.presistence.model.User;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
+public interface UserRepository extends BaseRepository<User, Long> {
 	boolean existsByUsername(@Nonnull String username);
 
 	@Nullable User findByUsername(@Nonnull String username);
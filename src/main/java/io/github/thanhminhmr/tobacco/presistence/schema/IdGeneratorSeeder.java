@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.schema;
+
+import io.github.thanhminhmr.tobacco.presistence.model.IdGenerators;
+import io.github.thanhminhmr.tobacco.presistence.model.TableId;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Field;
+
+/**
+ * Creates the {@link IdGenerators#TABLE} table, which Hibernate does not know about, and makes sure every
+ * {@link TableId} starts above the ids already in its table. Rows inserted while ids were identity columns, or by
+ * anything else than Hibernate, would otherwise collide with the first generated ids. Runs at startup, after the
+ * schema update and before any entity is persisted.
+ */
+@Component
+public final class IdGeneratorSeeder {
+	private static final @Nonnull Logger LOGGER = LoggerFactory.getLogger(IdGeneratorSeeder.class);
+
+	private final @Nonnull EntityManagerFactory entityManagerFactory;
+	private final @Nonnull JdbcTemplate jdbcTemplate;
+	private final @Nonnull TransactionTemplate transactionTemplate;
+
+	public IdGeneratorSeeder(@Nonnull EntityManagerFactory entityManagerFactory, @Nonnull JdbcTemplate jdbcTemplate,
+			@Nonnull TransactionTemplate transactionTemplate) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	@PostConstruct
+	public void seed() {
+		// in a read-write transaction, so that in production it is written through the write pool
+		transactionTemplate.executeWithoutResult(status -> seedAll());
+	}
+
+	private void seedAll() {
+		jdbcTemplate.execute("create table if not exists " + IdGenerators.TABLE + " (" + IdGenerators.NAME_COLUMN
+				+ " varchar(255) not null primary key, " + IdGenerators.VALUE_COLUMN + " bigint)");
+		for (final EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+			final Table table = entityType.getJavaType().getAnnotation(Table.class);
+			final TableId tableId = findTableId(entityType.getJavaType());
+			if (table == null || tableId == null) continue;
+			final Long maximumId = jdbcTemplate.queryForObject("select max(id) from " + table.name(), Long.class);
+			final long nextValue = (maximumId != null ? maximumId : 0) + 1;
+			final String name = tableId.value();
+			jdbcTemplate.update("insert into " + IdGenerators.TABLE + " (" + IdGenerators.NAME_COLUMN + ", "
+					+ IdGenerators.VALUE_COLUMN + ") select ?, ? where not exists (select 1 from "
+					+ IdGenerators.TABLE + " where " + IdGenerators.NAME_COLUMN + " = ?)", name, nextValue, name);
+			final int raised = jdbcTemplate.update("update " + IdGenerators.TABLE + " set "
+					+ IdGenerators.VALUE_COLUMN + " = ? where " + IdGenerators.NAME_COLUMN + " = ? and "
+					+ IdGenerators.VALUE_COLUMN + " < ?", nextValue, name, nextValue);
+			if (raised > 0) LOGGER.info("Id generator {} moved to {} above the existing ids", name, nextValue);
+		}
+	}
+
+	private static @Nullable TableId findTableId(@Nonnull Class<?> entityClass) {
+		for (final Field field : entityClass.getDeclaredFields()) {
+			if (field.isAnnotationPresent(Id.class)) return field.getAnnotation(TableId.class);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.schema;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compares the indexes declared with {@link Table#indexes()} on every entity with the indexes that actually exist in
+ * the database, and reports the missing ones at startup. Databases created before an index was declared do not
+ * necessarily get it from the schema update. Set {@code tobacco.schema.create-missing-indexes=true} to create them
+ * instead of only reporting them.
+ */
+@Component
+public final class IndexInspector {
+	private static final @Nonnull Logger LOGGER = LoggerFactory.getLogger(IndexInspector.class);
+
+	private final @Nonnull EntityManagerFactory entityManagerFactory;
+	private final @Nonnull JdbcTemplate jdbcTemplate;
+	private final @Nonnull TransactionTemplate transactionTemplate;
+	private final boolean createMissingIndexes;
+
+	public IndexInspector(@Nonnull EntityManagerFactory entityManagerFactory, @Nonnull JdbcTemplate jdbcTemplate,
+			@Nonnull TransactionTemplate transactionTemplate,
+			@Value("${tobacco.schema.create-missing-indexes:false}") boolean createMissingIndexes) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+		this.createMissingIndexes = createMissingIndexes;
+	}
+
+	@PostConstruct
+	public void inspect() {
+		final Set<String> existingIndexes = new HashSet<>(jdbcTemplate.queryForList(
+				"select name from sqlite_master where type = 'index'", String.class));
+		for (final EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+			final Table table = entityType.getJavaType().getAnnotation(Table.class);
+			if (table == null) continue;
+			for (final Index index : table.indexes()) {
+				if (existingIndexes.contains(index.name())) continue;
+				final String statement = "create " + (index.unique() ? "unique " : "") + "index if not exists "
+						+ index.name() + " on " + table.name() + " (" + index.columnList() + ")";
+				if (createMissingIndexes) {
+					LOGGER.info("Creating missing index {} on {}", index.name(), table.name());
+					// in a read-write transaction, so that in production it is written through the write pool
+					transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute(statement));
+				} else {
+					LOGGER.warn("Missing index {} on {}, create it with: {}", index.name(), table.name(), statement);
+				}
+			}
+		}
+	}
+}
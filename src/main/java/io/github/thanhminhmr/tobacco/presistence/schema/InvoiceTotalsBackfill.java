@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.schema;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Objects;
+
+/**
+ * Fills {@code item_count} and {@code total_amount} of invoices written before these columns existed. The schema
+ * update adds them with a default of zero, so only invoices that still have zero items but do have items need it;
+ * once filled, they are kept up to date by the item endpoints and this finds nothing to do.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public final class InvoiceTotalsBackfill {
+	private static final @Nonnull Logger LOGGER = LoggerFactory.getLogger(InvoiceTotalsBackfill.class);
+
+	private final @Nonnull JdbcTemplate jdbcTemplate;
+	private final @Nonnull TransactionTemplate transactionTemplate;
+
+	public InvoiceTotalsBackfill(@Nonnull JdbcTemplate jdbcTemplate, @Nonnull TransactionTemplate transactionTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	@PostConstruct
+	public void backfill() {
+		// in a read-write transaction, so that in production it is written through the write pool
+		final int updated = Objects.requireNonNull(transactionTemplate.execute(status -> jdbcTemplate.update("update invoices set"
+				+ " item_count = (select count(*) from invoice_items"
+				+ " where invoice_id = invoices.id and deleted = 0),"
+				+ " total_amount = (select coalesce(sum(unit_price * quantity), 0) from invoice_items"
+				+ " where invoice_id = invoices.id and deleted = 0)"
+				+ " where item_count = 0 and exists (select 1 from invoice_items"
+				+ " where invoice_id = invoices.id and deleted = 0)")));
+		if (updated > 0) LOGGER.info("Filled item count and total amount of {} invoices", updated);
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.search;
+
+import jakarta.annotation.Nonnull;
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers one SQL function per {@link FullTextIndex.Table}, so that criteria queries can use the FTS5
+ * {@code MATCH} operator: {@code <table>_fts_match(id, query)} is true if the row with this id matches the query.
+ * Loaded by Hibernate through {@link java.util.ServiceLoader}.
+ */
+public final class FullTextFunctionContributor implements FunctionContributor {
+	@Override
+	public void contributeFunctions(@Nonnull FunctionContributions functionContributions) {
+		final BasicType<Boolean> booleanType = functionContributions.getTypeConfiguration()
+				.getBasicTypeRegistry()
+				.resolve(StandardBasicTypes.BOOLEAN);
+		for (final FullTextIndex.Table table : FullTextIndex.TABLES) {
+			functionContributions.getFunctionRegistry().registerPattern(table.function(),
+					"(?1 in (select rowid from " + table.index() + " where " + table.index() + " match ?2))",
+					booleanType);
+		}
+	}
+}
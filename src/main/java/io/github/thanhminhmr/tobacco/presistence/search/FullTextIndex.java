@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.search;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * SQLite FTS5 full-text indexes over the free-text columns that list endpoints filter on.
+ * <p>
+ * The FTS5 tables are external-content tables: they only store the index and read the text back from the real table.
+ * They are kept in sync by triggers, so every insert, update or delete is indexed whichever way it is written.
+ * Hibernate does not know about virtual tables, so they are created here, after the schema has been updated, and
+ * rebuilt once from the existing rows when first created.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public final class FullTextIndex {
+	private static final @Nonnull Logger LOGGER = LoggerFactory.getLogger(FullTextIndex.class);
+	private static final @Nonnull Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+	public static final @Nonnull Table PRODUCTS = new Table("products",
+			List.of("display_name", "display_description", "display_unit"));
+	public static final @Nonnull Table INVOICES = new Table("invoices",
+			List.of("display_description"));
+	public static final @Nonnull List<Table> TABLES = List.of(PRODUCTS, INVOICES);
+
+	private final @Nonnull JdbcTemplate jdbcTemplate;
+	private final @Nonnull TransactionTemplate transactionTemplate;
+
+	public FullTextIndex(@Nonnull JdbcTemplate jdbcTemplate, @Nonnull TransactionTemplate transactionTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.transactionTemplate = transactionTemplate;
+	}
+
+	@PostConstruct
+	public void createIndexes() {
+		// in read-write transactions, so that in production they are written through the write pool
+		for (final Table table : TABLES) transactionTemplate.executeWithoutResult(status -> createIndex(table));
+	}
+
+	private void createIndex(@Nonnull Table table) {
+		final String index = table.index();
+		final String columns = String.join(", ", table.columns());
+		final String newValues = "new.id, new." + String.join(", new.", table.columns());
+		final String oldValues = "old.id, old." + String.join(", old.", table.columns());
+		final Integer existing = jdbcTemplate.queryForObject(
+				"select count(*) from sqlite_master where type = 'table' and name = ?", Integer.class, index);
+		jdbcTemplate.execute("create virtual table if not exists " + index + " using fts5(" + columns
+				+ ", content='" + table.name() + "', content_rowid='id', tokenize='unicode61 remove_diacritics 2')");
+		jdbcTemplate.execute("create trigger if not exists " + index + "_insert after insert on " + table.name()
+				+ " begin insert into " + index + "(rowid, " + columns + ") values (" + newValues + "); end");
+		jdbcTemplate.execute("create trigger if not exists " + index + "_delete after delete on " + table.name()
+				+ " begin insert into " + index + "(" + index + ", rowid, " + columns + ") values ('delete', "
+				+ oldValues + "); end");
+		// only changes of the indexed columns need reindexing, invoices are also updated on every item change; the
+		// trigger is recreated in case an older one listens to every column
+		jdbcTemplate.execute("drop trigger if exists " + index + "_update");
+		jdbcTemplate.execute("create trigger " + index + "_update after update of " + columns + " on " + table.name()
+				+ " begin insert into " + index + "(" + index + ", rowid, " + columns + ") values ('delete', "
+				+ oldValues + "); insert into " + index + "(rowid, " + columns + ") values (" + newValues + "); end");
+		if (existing == null || existing == 0) {
+			// newly created, index the rows that are already there
+			LOGGER.info("Building full-text index {}", index);
+			jdbcTemplate.execute("insert into " + index + "(" + index + ") values ('rebuild')");
+		}
+	}
+
+	/**
+	 * Build a predicate matching rows whose column contains every word of the text, each word as a prefix. Falls back
+	 * to {@code LIKE} if the text has no searchable word.
+	 *
+	 * @param builder Criteria builder.
+	 * @param root Root of the indexed entity.
+	 * @param table The full-text index.
+	 * @param column Column name.
+	 * @param attribute Entity attribute mapped to the column.
+	 * @param text Text to search.
+	 * @return The predicate.
+	 */
+	public static @Nonnull Predicate match(@Nonnull CriteriaBuilder builder, @Nonnull Root<?> root,
+			@Nonnull Table table, @Nonnull String column, @Nonnull String attribute, @Nonnull String text) {
+		final String query = toQuery(column, text);
+		if (query == null) return builder.like(root.get(attribute), '%' + text + '%');
+		return builder.isTrue(builder.function(table.function(), Boolean.class, root.get("id"), builder.literal(query)));
+	}
+
+	private static @Nullable String toQuery(@Nonnull String column, @Nonnull String text) {
+		final StringJoiner query = new StringJoiner(" ", column + " : (", ")");
+		boolean empty = true;
+		for (final String word : NON_WORD.split(text)) {
+			if (word.isEmpty()) continue;
+			// words only contain letters and digits, so quoting is enough to escape them
+			query.add('"' + word + "\"*");
+			empty = false;
+		}
+		return empty ? null : query.toString();
+	}
+
+
+	/**
+	 * @param name Name of the indexed table.
+	 * @param columns Indexed columns.
+	 */
+	public record Table(@Nonnull String name, @Nonnull List<String> columns) {
+		public @Nonnull String index() {
+			return name + "_fts";
+		}
+
+		/**
+		 * @return Name of the SQL function registered by {@link FullTextFunctionContributor} for this index.
+		 */
+		public @Nonnull String function() {
+			return name + "_fts_match";
+		}
+	}
+}
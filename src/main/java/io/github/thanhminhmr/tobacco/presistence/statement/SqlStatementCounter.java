@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.statement;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread while a {@link Scope} is open. Registered as the
+ * Hibernate statement inspector, which Hibernate creates itself, hence the static state.
+ * <p>
+ * A scope has a budget: once more statements than that are run, the scope is marked as exceeded, or, if it is
+ * failing, the statement over the budget throws a {@link SqlBudgetExceededException} instead of running.
+ */
+public final class SqlStatementCounter implements StatementInspector {
+	private static final @Nonnull ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+	private static final int MAXIMUM_RECORDED_STATEMENTS = 100;
+
+	@Override
+	public @Nonnull String inspect(@Nonnull String sql) {
+		for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) scope.count(sql);
+		return sql;
+	}
+
+	/**
+	 * Start counting on the current thread, without a budget.
+	 *
+	 * @return The scope, to be closed on the same thread.
+	 * @see #open(String, int, boolean)
+	 */
+	public static @Nonnull Scope open() {
+		return open("statements", Integer.MAX_VALUE, false);
+	}
+
+	/**
+	 * Start counting on the current thread. Scopes can be nested, a statement counts toward every open scope.
+	 *
+	 * @param description What is counted, used in messages.
+	 * @param budget Maximum number of statements.
+	 * @param failing Whether a statement over the budget throws.
+	 * @return The scope, to be closed on the same thread.
+	 */
+	public static @Nonnull Scope open(@Nonnull String description, int budget, boolean failing) {
+		final Scope scope = new Scope(CURRENT.get(), description, budget, failing);
+		CURRENT.set(scope);
+		return scope;
+	}
+
+	public static final class Scope implements AutoCloseable {
+		private final @Nullable Scope parent;
+		private final @Nonnull String description;
+		private final int budget;
+		private final boolean failing;
+		private final @Nonnull List<String> statements = new ArrayList<>();
+		private int count;
+
+		private Scope(@Nullable Scope parent, @Nonnull String description, int budget, boolean failing) {
+			this.parent = parent;
+			this.description = description;
+			this.budget = budget;
+			this.failing = failing;
+		}
+
+		private void count(@Nonnull String sql) {
+			count += 1;
+			if (statements.size() < MAXIMUM_RECORDED_STATEMENTS) statements.add(sql);
+			if (failing && count > budget) {
+				throw new SqlBudgetExceededException(description + " ran more than " + budget + " SQL statements,"
+						+ " the last one was: " + sql);
+			}
+		}
+
+		public @Nonnull String getDescription() {
+			return description;
+		}
+
+		public int getBudget() {
+			return budget;
+		}
+
+		/**
+		 * @return Number of statements run so far.
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return The first statements run, up to a hundred.
+		 */
+		public @Nonnull List<String> getStatements() {
+			return Collections.unmodifiableList(statements);
+		}
+
+		public boolean isExceeded() {
+			return count > budget;
+		}
+
+		@Override
+		public void close() {
+			if (CURRENT.get() == this) {
+				if (parent != null) CURRENT.set(parent);
+				else CURRENT.remove();
+			}
+		}
+	}
+
+	public static final class SqlBudgetExceededException extends IllegalStateException {
+		public SqlBudgetExceededException(@Nonnull String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.security;
+
+import io.github.thanhminhmr.tobacco.presistence.model.User;
+import jakarta.annotation.Nonnull;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates requests carrying an {@code Authorization: Bearer <token>} header issued by {@link TokenService}.
+ * Requests without a bearer token are passed through untouched, so HTTP Basic keeps working.
+ */
+public final class BearerTokenFilter extends OncePerRequestFilter {
+	private static final @Nonnull String PREFIX = "Bearer ";
+
+	private final @Nonnull TokenService tokenService;
+
+	public BearerTokenFilter(@Nonnull TokenService tokenService) {
+		this.tokenService = tokenService;
+	}
+
+	@Override
+	protected void doFilterInternal(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response,
+			@Nonnull FilterChain filterChain) throws ServletException, IOException {
+		final String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+		if (header != null && header.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+			final User user = tokenService.verify(header.substring(PREFIX.length()).trim());
+			if (user == null) {
+				response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+				response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+				return;
+			}
+			final SecurityContext context = SecurityContextHolder.createEmptyContext();
+			context.setAuthentication(new PreAuthenticatedAuthenticationToken(user, null, user.getAuthorities()));
+			SecurityContextHolder.setContext(context);
+		}
+		filterChain.doFilter(request, response);
+	}
+}
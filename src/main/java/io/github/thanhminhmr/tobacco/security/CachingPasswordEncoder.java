@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.security;
+
+import io.github.thanhminhmr.tobacco.util.ExpiringCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * A {@link PasswordEncoder} that remembers successful verifications for a short time, so that repeated HTTP Basic
+ * requests do not pay for a full (deliberately slow) password hash verification every time.
+ * <p>
+ * Only a keyed HMAC of the presented password together with the stored hash is kept, never the password itself. The
+ * key is random and lives only in memory. Because the stored hash is part of the fingerprint, changing the password
+ * invalidates every remembered verification at once. Failed verifications are never cached.
+ * <p>
+ * The time spent in full verifications is published as the {@code tobacco.password.verifications} timer, and the
+ * cache lookups as the {@code tobacco.password.verification.cache} counter tagged with {@code result=hit|miss}.
+ */
+public final class CachingPasswordEncoder implements PasswordEncoder {
+	private static final @Nonnull String ALGORITHM = "HmacSHA256";
+
+	private final @Nonnull PasswordEncoder delegate;
+	private final @Nonnull SecretKeySpec key;
+	private final @Nonnull ExpiringCache<String, Boolean> verified;
+	private final @Nonnull Timer verificationTimer;
+	private final @Nonnull Counter cacheHits;
+	private final @Nonnull Counter cacheMisses;
+
+	public CachingPasswordEncoder(@Nonnull PasswordEncoder delegate, int maximumSize, @Nonnull Duration timeToLive,
+			@Nonnull MeterRegistry meterRegistry) {
+		final byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.delegate = delegate;
+		this.key = new SecretKeySpec(secret, ALGORITHM);
+		this.verified = new ExpiringCache<>(maximumSize, timeToLive);
+		this.verificationTimer = Timer.builder("tobacco.password.verifications")
+				.description("Full password hash verifications")
+				.publishPercentiles(0.5, 0.95, 0.99)
+				.register(meterRegistry);
+		this.cacheHits = Counter.builder("tobacco.password.verification.cache")
+				.tag("result", "hit")
+				.register(meterRegistry);
+		this.cacheMisses = Counter.builder("tobacco.password.verification.cache")
+				.tag("result", "miss")
+				.register(meterRegistry);
+	}
+
+	@Override
+	public @Nonnull String encode(@Nonnull CharSequence rawPassword) {
+		return delegate.encode(rawPassword);
+	}
+
+	@Override
+	public boolean matches(@Nullable CharSequence rawPassword, @Nullable String encodedPassword) {
+		if (rawPassword == null || encodedPassword == null) {
+			return delegate.matches(rawPassword, encodedPassword);
+		}
+		final String fingerprint = fingerprint(rawPassword, encodedPassword);
+		if (verified.get(fingerprint) != null) {
+			cacheHits.increment();
+			return true;
+		}
+		cacheMisses.increment();
+		// not verified recently, do the full check
+		final Timer.Sample sample = Timer.start();
+		final boolean matches = delegate.matches(rawPassword, encodedPassword);
+		sample.stop(verificationTimer);
+		if (!matches) return false;
+		verified.put(fingerprint, Boolean.TRUE);
+		return true;
+	}
+
+	@Override
+	public boolean upgradeEncoding(@Nonnull String encodedPassword) {
+		return delegate.upgradeEncoding(encodedPassword);
+	}
+
+	private @Nonnull String fingerprint(@Nonnull CharSequence rawPassword, @Nonnull String encodedPassword) {
+		try {
+			final Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+			mac.update((byte) 0);
+			return Base64.getEncoder().encodeToString(
+					mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (final GeneralSecurityException exception) {
+			// HmacSHA256 is required to be available on every Java platform
+			throw new IllegalStateException(exception);
+		}
+	}
+}
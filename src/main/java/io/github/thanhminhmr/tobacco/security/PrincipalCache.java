@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.security;
+
+import io.github.thanhminhmr.tobacco.util.ExpiringCache;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Cache of authenticated principals, keyed by username. It sits in front of
+ * {@link io.github.thanhminhmr.tobacco.web.rest.AccountController#loadUserByUsername(String)} so that HTTP Basic
+ * authentication does not hit the database on every request. Any code path that changes a user must call
+ * {@link #removeUserFromCache(String)}.
+ */
+@Component
+public final class PrincipalCache implements UserCache {
+	private final @Nonnull ExpiringCache<String, UserDetails> cache;
+
+	public PrincipalCache(
+			@Value("${tobacco.security.principal-cache.maximum-size:10000}") int maximumSize,
+			@Value("${tobacco.security.principal-cache.time-to-live:5m}") @Nonnull Duration timeToLive) {
+		this.cache = new ExpiringCache<>(maximumSize, timeToLive);
+	}
+
+	@Override
+	public @Nullable UserDetails getUserFromCache(@Nonnull String username) {
+		return cache.get(username);
+	}
+
+	@Override
+	public void putUserInCache(@Nonnull UserDetails user) {
+		cache.put(user.getUsername(), user);
+	}
+
+	@Override
+	public void removeUserFromCache(@Nonnull String username) {
+		cache.remove(username);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.security;
+
+import io.github.thanhminhmr.tobacco.presistence.repository.GroupRepository;
+import io.github.thanhminhmr.tobacco.util.LongHashSet;
+import jakarta.annotation.Nonnull;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of which invoice authors each user can see through group membership: a Sale Manager can see the
+ * invoices of every user that shares at least one group with them.
+ * <p>
+ * Memberships are loaded from {@code users_groups} once the application is ready and then kept up to date by
+ * {@link #addMembership(long, long)} and {@link #removeMembership(long, long)}. The visible author set of a user is
+ * derived on first use and dropped whenever a group they belong to changes, so an authorization check is a single
+ * hash probe.
+ */
+@Component
+public final class SaleManagerVisibilityIndex {
+	private final @Nonnull GroupRepository groupRepository;
+
+	// guarded by this
+	private final @Nonnull Map<Long, Set<Long>> groupMembers = new HashMap<>();
+	private final @Nonnull Map<Long, Set<Long>> userGroups = new HashMap<>();
+	private boolean loaded;
+
+	private final @Nonnull ConcurrentHashMap<Long, LongHashSet> visibleAuthors = new ConcurrentHashMap<>();
+
+	public SaleManagerVisibilityIndex(@Nonnull GroupRepository groupRepository) {
+		this.groupRepository = groupRepository;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void reload() {
+		groupMembers.clear();
+		userGroups.clear();
+		visibleAuthors.clear();
+		for (final GroupRepository.Membership membership : groupRepository.findAllMemberships()) {
+			groupMembers.computeIfAbsent(membership.getGroupId(), id -> new HashSet<>()).add(membership.getUserId());
+			userGroups.computeIfAbsent(membership.getUserId(), id -> new HashSet<>()).add(membership.getGroupId());
+		}
+		this.loaded = true;
+	}
+
+	/**
+	 * Check whether a user can see the invoices of an author, either because they are the author or because they
+	 * share a group.
+	 *
+	 * @param userId Current user id.
+	 * @param authorId Invoice author id.
+	 * @return {@code true} if the author is visible to the user.
+	 */
+	public boolean isVisible(long userId, long authorId) {
+		return userId == authorId || getVisibleAuthors(userId).contains(authorId);
+	}
+
+	/**
+	 * @param userId Current user id.
+	 * @return Ids of every author visible to the user, including the user themselves.
+	 */
+	public @Nonnull LongHashSet getVisibleAuthors(long userId) {
+		final LongHashSet authors = visibleAuthors.get(userId);
+		return authors != null ? authors : computeVisibleAuthors(userId);
+	}
+
+	public synchronized void addMembership(long groupId, long userId) {
+		ensureLoaded();
+		if (groupMembers.computeIfAbsent(groupId, id -> new HashSet<>()).add(userId)) {
+			userGroups.computeIfAbsent(userId, id -> new HashSet<>()).add(groupId);
+			invalidateGroup(groupId);
+		}
+	}
+
+	public synchronized void removeMembership(long groupId, long userId) {
+		ensureLoaded();
+		final Set<Long> members = groupMembers.get(groupId);
+		if (members != null && members.contains(userId)) {
+			// invalidate before removing, so the removed user is invalidated too
+			invalidateGroup(groupId);
+			members.remove(userId);
+			final Set<Long> groups = userGroups.get(userId);
+			if (groups != null) groups.remove(groupId);
+		}
+	}
+
+	private synchronized @Nonnull LongHashSet computeVisibleAuthors(long userId) {
+		ensureLoaded();
+		final LongHashSet cached = visibleAuthors.get(userId);
+		if (cached != null) return cached;
+		final Set<Long> authors = new HashSet<>();
+		authors.add(userId);
+		for (final Long groupId : userGroups.getOrDefault(userId, Set.of())) {
+			authors.addAll(groupMembers.getOrDefault(groupId, Set.of()));
+		}
+		final LongHashSet authorSet = LongHashSet.of(authors.stream().mapToLong(Long::longValue).toArray());
+		visibleAuthors.put(userId, authorSet);
+		return authorSet;
+	}
+
+	private void invalidateGroup(long groupId) {
+		for (final Long memberId : groupMembers.getOrDefault(groupId, Set.of())) visibleAuthors.remove(memberId);
+	}
+
+	private void ensureLoaded() {
+		// requests may arrive before the application is ready
+		if (!loaded) reload();
+	}
+}
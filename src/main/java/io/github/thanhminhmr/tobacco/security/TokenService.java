@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.security;
+
+import io.github.thanhminhmr.tobacco.presistence.model.Authority;
+import io.github.thanhminhmr.tobacco.presistence.model.User;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Issues and verifies signed, self-contained, short-lived bearer tokens.
+ * <p>
+ * A token is {@code base64url(payload) + "." + base64url(hmac)}, where the payload carries the user id, the revocation
+ * generation, the expiry, the username and the authorities. Verifying a token needs neither the database nor the
+ * password encoder. The signing key is random and lives only in memory, so restarting the application invalidates
+ * every token.
+ * <p>
+ * Revocation is done with a per-user generation counter: {@link #revoke(long)} bumps the counter, and every token
+ * issued with an older generation is rejected from then on.
+ */
+@Component
+public final class TokenService {
+	private static final @Nonnull String ALGORITHM = "HmacSHA256";
+
+	private final @Nonnull SecretKeySpec key;
+	private final @Nonnull Duration timeToLive;
+	private final @Nonnull ConcurrentHashMap<Long, Long> generations = new ConcurrentHashMap<>();
+
+	public TokenService(@Value("${tobacco.security.token.time-to-live:15m}") @Nonnull Duration timeToLive) {
+		final byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, ALGORITHM);
+		this.timeToLive = timeToLive;
+	}
+
+	public @Nonnull Duration getTimeToLive() {
+		return timeToLive;
+	}
+
+	public @Nonnull String issue(@Nonnull User user, @Nonnull Instant expiresAt) {
+		final StringJoiner authorities = new StringJoiner(",");
+		for (final Authority authority : user.getAuthorities()) authorities.add(authority.name());
+		final String payload = user.getId()
+				+ ":" + generation(user.getId())
+				+ ":" + expiresAt.getEpochSecond()
+				+ ":" + user.getUsername()
+				+ ":" + authorities;
+		final String encodedPayload = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+		return encodedPayload + '.' + sign(encodedPayload);
+	}
+
+	/**
+	 * Verify a token and rebuild its principal.
+	 *
+	 * @param token The token.
+	 * @return A detached {@link User} carrying only the id, the username and the authorities, or {@code null} if the
+	 * 		token is malformed, forged, expired or revoked.
+	 */
+	public @Nullable User verify(@Nonnull String token) {
+		final int separator = token.indexOf('.');
+		if (separator < 0) return null;
+		final String encodedPayload = token.substring(0, separator);
+		if (!MessageDigest.isEqual(sign(encodedPayload).getBytes(StandardCharsets.US_ASCII),
+				token.substring(separator + 1).getBytes(StandardCharsets.US_ASCII))) {
+			// forged or corrupted token
+			return null;
+		}
+		try {
+			final String[] parts = new String(Base64.getUrlDecoder().decode(encodedPayload), StandardCharsets.UTF_8)
+					.split(":", 5);
+			if (parts.length != 5) return null;
+			final long userId = Long.parseLong(parts[0]);
+			final long generation = Long.parseLong(parts[1]);
+			final long expiresAt = Long.parseLong(parts[2]);
+			if (Instant.now().getEpochSecond() >= expiresAt || generation < generation(userId)) {
+				// expired or revoked
+				return null;
+			}
+			final Set<Authority> authorities = EnumSet.noneOf(Authority.class);
+			if (!parts[4].isEmpty()) {
+				for (final String authority : parts[4].split(",")) authorities.add(Authority.valueOf(authority));
+			}
+			return new User()
+					.setId(userId)
+					.setUsername(parts[3])
+					.setAuthorities(authorities)
+					.setDeleted(false);
+		} catch (final IllegalArgumentException exception) {
+			// malformed payload, should never happen with a valid signature
+			return null;
+		}
+	}
+
+	/**
+	 * Revoke every token issued to this user so far.
+	 *
+	 * @param userId The user id.
+	 */
+	public void revoke(long userId) {
+		generations.merge(userId, 1L, Long::sum);
+	}
+
+	private long generation(long userId) {
+		return generations.getOrDefault(userId, 0L);
+	}
+
+	private @Nonnull String sign(@Nonnull String encodedPayload) {
+		try {
+			final Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return Base64.getUrlEncoder().withoutPadding()
+					.encodeToString(mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII)));
+		} catch (final GeneralSecurityException exception) {
+			// HmacSHA256 is required to be available on every Java platform
+			throw new IllegalStateException(exception);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.util;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of threads holding connections from this data source at the same time. Threads over the limit
+ * wait in FIFO order on a semaphore, which costs nothing for a virtual thread, instead of all hitting the pool and the
+ * database together.
+ * <p>
+ * Permits are taken per thread, not per connection: a thread that already holds a connection, e.g. a transaction that
+ * needs a second one, never waits for a permit, which would deadlock once every permit is held by such a thread. The
+ * permit is given back when the last connection of the thread is closed.
+ */
+public final class ConcurrencyLimitingDataSource extends DelegatingDataSource {
+	private final @Nonnull Semaphore permits;
+	private final long acquireTimeoutNanos;
+	// connections open by the current thread, the permit is held while it is not zero
+	private final @Nonnull ThreadLocal<AtomicInteger> openConnections = ThreadLocal.withInitial(AtomicInteger::new);
+
+	public ConcurrencyLimitingDataSource(@Nonnull DataSource targetDataSource, int maximumConcurrency,
+			@Nonnull Duration acquireTimeout) {
+		super(targetDataSource);
+		this.permits = new Semaphore(maximumConcurrency, true);
+		this.acquireTimeoutNanos = acquireTimeout.toNanos();
+	}
+
+	@Override
+	public @Nonnull Connection getConnection() throws SQLException {
+		final AtomicInteger holder = acquire();
+		try {
+			return limited(super.getConnection(), holder);
+		} catch (SQLException | RuntimeException exception) {
+			release(holder);
+			throw exception;
+		}
+	}
+
+	@Override
+	public @Nonnull Connection getConnection(@Nonnull String username, @Nonnull String password) throws SQLException {
+		final AtomicInteger holder = acquire();
+		try {
+			return limited(super.getConnection(username, password), holder);
+		} catch (SQLException | RuntimeException exception) {
+			release(holder);
+			throw exception;
+		}
+	}
+
+	private @Nonnull AtomicInteger acquire() throws SQLException {
+		final AtomicInteger holder = openConnections.get();
+		// the thread already holds the permit
+		if (holder.getAndIncrement() > 0) return holder;
+		try {
+			if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+				holder.decrementAndGet();
+				throw new SQLTransientConnectionException("Too many concurrent database connections.");
+			}
+		} catch (InterruptedException exception) {
+			holder.decrementAndGet();
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted while waiting for a database connection.",
+					exception);
+		}
+		return holder;
+	}
+
+	// the connection may be closed on another thread than the one that opened it, hence the holder
+	private void release(@Nonnull AtomicInteger holder) {
+		if (holder.decrementAndGet() == 0) permits.release();
+	}
+
+	private @Nonnull Connection limited(@Nonnull Connection connection, @Nonnull AtomicInteger holder) {
+		final AtomicBoolean released = new AtomicBoolean();
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+				(proxy, method, arguments) -> {
+					if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+						try {
+							connection.close();
+						} finally {
+							release(holder);
+						}
+						return null;
+					}
+					try {
+						return method.invoke(connection, arguments);
+					} catch (InvocationTargetException exception) {
+						throw exception.getTargetException();
+					}
+				});
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.util;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits one line of RFC 4180 CSV into its fields, or joins fields into one. Fields may be quoted, with {@code ""} as
+ * an escaped quote. Quoted fields spanning several lines are not supported, since input is read line by line.
+ */
+public final class CsvLine {
+	private CsvLine() {
+	}
+
+	public static @Nonnull List<String> split(@Nonnull String line) {
+		final List<String> fields = new ArrayList<>();
+		final StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int index = 0; index < line.length(); index++) {
+			final char character = line.charAt(index);
+			if (quoted) {
+				if (character != '"') {
+					field.append(character);
+				} else if (index + 1 < line.length() && line.charAt(index + 1) == '"') {
+					field.append('"');
+					index += 1;
+				} else {
+					quoted = false;
+				}
+			} else if (character == '"') {
+				quoted = true;
+			} else if (character == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(character);
+			}
+		}
+		if (quoted) throw new IllegalArgumentException("Unterminated quoted field.");
+		fields.add(field.toString());
+		return fields;
+	}
+
+	/**
+	 * @param fields Fields, {@code null} is written as an empty field.
+	 * @return The line, without line terminator.
+	 */
+	public static @Nonnull String join(@Nonnull Object... fields) {
+		final StringBuilder line = new StringBuilder();
+		for (int index = 0; index < fields.length; index++) {
+			if (index > 0) line.append(',');
+			final String field = fields[index] != null ? fields[index].toString() : "";
+			if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\r') >= 0
+					|| field.indexOf('\n') >= 0) {
+				line.append('"').append(field.replace("\"", "\"\"")).append('"');
+			} else {
+				line.append(field);
+			}
+		}
+		return line.toString();
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.util;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small thread-safe cache with a maximum size and a fixed time-to-live. Once the cache is full, the least recently
+ * used entry is evicted. Expired entries are dropped lazily when they are looked up.
+ *
+ * @param <K> Key type.
+ * @param <V> Value type.
+ */
+public final class ExpiringCache<K, V> {
+	private final @Nonnull Map<K, Entry<V>> entries;
+	private final long timeToLiveNanos;
+
+	public ExpiringCache(int maximumSize, @Nonnull Duration timeToLive) {
+		if (maximumSize <= 0) throw new IllegalArgumentException("maximumSize must be positive.");
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(@Nonnull Map.Entry<K, Entry<V>> eldest) {
+				return size() > maximumSize;
+			}
+		};
+	}
+
+	public synchronized @Nullable V get(@Nonnull K key) {
+		final Entry<V> entry = entries.get(key);
+		if (entry == null) return null;
+		if (System.nanoTime() - entry.expiresAt() >= 0) {
+			// expired, drop it
+			entries.remove(key);
+			return null;
+		}
+		return entry.value();
+	}
+
+	public synchronized void put(@Nonnull K key, @Nonnull V value) {
+		entries.put(key, new Entry<>(value, System.nanoTime() + timeToLiveNanos));
+	}
+
+	public synchronized void remove(@Nonnull K key) {
+		entries.remove(key);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+
+	private record Entry<V>(@Nonnull V value, long expiresAt) {
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.util;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * An immutable set of primitive {@code long} values, backed by an open-addressing hash table with linear probing. It
+ * avoids boxing every element, which matters when the set is probed on every request.
+ */
+public final class LongHashSet {
+	private static final @Nonnull LongHashSet EMPTY = new LongHashSet(new long[0]);
+
+	private final @Nonnull long[] slots;
+	private final int mask;
+	private final int size;
+	private final boolean containsZero;
+
+	private LongHashSet(@Nonnull long[] values) {
+		// table size is a power of two at least twice the number of values, so probing always ends
+		final int capacity = Integer.highestOneBit(Math.max(values.length * 2, 2) - 1) << 1;
+		this.slots = new long[capacity];
+		this.mask = capacity - 1;
+		int size = 0;
+		boolean containsZero = false;
+		for (final long value : values) {
+			if (value == 0) {
+				// zero marks an empty slot, so it is tracked separately
+				if (!containsZero) size += 1;
+				containsZero = true;
+				continue;
+			}
+			int index = mix(value) & mask;
+			while (slots[index] != 0 && slots[index] != value) index = (index + 1) & mask;
+			if (slots[index] == 0) {
+				slots[index] = value;
+				size += 1;
+			}
+		}
+		this.size = size;
+		this.containsZero = containsZero;
+	}
+
+	public static @Nonnull LongHashSet of() {
+		return EMPTY;
+	}
+
+	public static @Nonnull LongHashSet of(@Nonnull long... values) {
+		return values.length > 0 ? new LongHashSet(values) : EMPTY;
+	}
+
+	public boolean contains(long value) {
+		if (value == 0) return containsZero;
+		int index = mix(value) & mask;
+		while (true) {
+			final long slot = slots[index];
+			if (slot == value) return true;
+			if (slot == 0) return false;
+			index = (index + 1) & mask;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public @Nonnull long[] toArray() {
+		final long[] values = new long[size];
+		int index = 0;
+		if (containsZero) values[index++] = 0;
+		for (final long slot : slots) if (slot != 0) values[index++] = slot;
+		return values;
+	}
+
+	private static int mix(long value) {
+		final long hash = value * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+}
@@ -9,6 +9,8 @@ import io.github.thanhminhmr.tobacco.dto.validation.DisplayString;
 import io.github.thanhminhmr.tobacco.dto.validation.PasswordString;
 import io.github.thanhminhmr.tobacco.presistence.model.User;
 import io.github.thanhminhmr.tobacco.presistence.repository.UserRepository;
+import io.github.thanhminhmr.tobacco.security.PrincipalCache;
+import io.github.thanhminhmr.tobacco.security.TokenService;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import jakarta.validation.Valid;
@@ -19,14 +21,20 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
 @RestController
 @RequestMapping("/api/account")
 public record AccountController(
 		@Nonnull PasswordEncoder passwordEncoder,
-		@Nonnull UserRepository userRepository
+		@Nonnull UserRepository userRepository,
+		@Nonnull PrincipalCache principalCache,
+		@Nonnull TokenService tokenService
 ) implements UserDetailsService {
 	public static @Nonnull User getCurrentUser(@Nonnull Authentication authentication) {
 		// check if logged in
@@ -46,6 +54,15 @@ public record AccountController(
 		return user;
 	}
 
+	/**
+	 * The principal may be shared with other requests through the {@link PrincipalCache}, or rebuilt from a bearer
+	 * token with only its id, username and authorities. Anything that needs the full current user or modifies it works
+	 * on a freshly loaded entity instead.
+	 */
+	private @Nonnull User loadCurrentUser(@Nonnull Authentication authentication) {
+		return userRepository.getReferenceById(getCurrentUser(authentication).getId());
+	}
+
 
 	/**
 	 * Users get their account info.
@@ -56,7 +73,24 @@ public record AccountController(
 	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
 	public @Nonnull UserDto get(@NotNull Authentication authentication) {
 		// return current user info
-		return getCurrentUser(authentication).toDto();
+		return loadCurrentUser(authentication).toDto();
+	}
+
+	/**
+	 * Users exchange their password for a short-lived bearer token.
+	 *
+	 * @param authentication Current user authentication.
+	 * @return The token and its expiry time.
+	 */
+	@PostMapping(value = "/token", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @Nonnull AccountTokenDto token(@NotNull Authentication authentication) {
+		if (authentication instanceof PreAuthenticatedAuthenticationToken) {
+			// a token must not be able to extend its own lifetime
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Log in with password to get a new token.");
+		}
+		final User user = getCurrentUser(authentication);
+		final Instant expiresAt = Instant.now().plus(tokenService.getTimeToLive()).truncatedTo(ChronoUnit.SECONDS);
+		return new AccountTokenDto(tokenService.issue(user, expiresAt), expiresAt);
 	}
 
 	/**
@@ -68,9 +102,11 @@ public record AccountController(
 	 */
 	@PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public @Nonnull UserDto update(@NotNull Authentication authentication, @RequestBody @NotNull @Valid AccountUpdateDto dto) {
-		final User user = getCurrentUser(authentication);
+		final User user = loadCurrentUser(authentication);
 		if (dto.displayName() != null) user.setDisplayName(dto.displayName());
-		return userRepository.save(user).toDto();
+		final UserDto userDto = userRepository.save(user).toDto();
+		principalCache.removeUserFromCache(user.getUsername());
+		return userDto;
 	}
 
 	/**
@@ -81,7 +117,7 @@ public record AccountController(
 	 */
 	@DeleteMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public void delete(@NotNull Authentication authentication, @RequestBody @NotNull @Valid AccountConfirmPasswordDto dto) {
-		final User user = getCurrentUser(authentication);
+		final User user = loadCurrentUser(authentication);
 		// check current password
 		if (!passwordEncoder.matches(dto.password(), user.getPassword())) {
 			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid current password.");
@@ -89,7 +125,8 @@ public record AccountController(
 		// disable user
 		user.setDeleted(true);
 		userRepository.save(user);
-		// TODO logout?
+		principalCache.removeUserFromCache(user.getUsername());
+		tokenService.revoke(user.getId());
 	}
 
 	/**
@@ -100,7 +137,7 @@ public record AccountController(
 	 */
 	@PutMapping(value = "/password", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public void changePassword(@NotNull Authentication authentication, @RequestBody @NotNull @Valid AccountChangePasswordDto dto) {
-		final User user = getCurrentUser(authentication);
+		final User user = loadCurrentUser(authentication);
 		// check current password
 		if (!passwordEncoder.matches(dto.currentPassword(), user.getPassword())) {
 			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid current password.");
@@ -108,7 +145,8 @@ public record AccountController(
 		// save new password
 		user.setPassword(passwordEncoder.encode(dto.newPassword()));
 		userRepository.save(user);
-		// TODO logout?
+		principalCache.removeUserFromCache(user.getUsername());
+		tokenService.revoke(user.getId());
 	}
 
 
@@ -130,5 +168,11 @@ public record AccountController(
 	) {
 	}
 
+	public record AccountTokenDto(
+			@NotNull String token,
+			@NotNull Instant expiresAt
+	) {
+	}
+
 	//endregion DTO
 }
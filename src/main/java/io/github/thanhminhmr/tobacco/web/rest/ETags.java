@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.StringJoiner;
+
+/**
+ * Entity tags for conditional GET requests. A single row is tagged with its id and version, so its revision can be
+ * checked with a query of a few columns before the row itself is loaded. A list is tagged with a digest of its
+ * serialized content, which saves the bandwidth, not the query.
+ */
+final class ETags {
+	private ETags() {
+	}
+
+	/**
+	 * @param parts What identifies the revision of the resource, e.g. its id and version.
+	 * @return A strong entity tag.
+	 */
+	static @Nonnull String of(@Nullable Object... parts) {
+		final StringJoiner tag = new StringJoiner("-", "\"", "\"");
+		for (final Object part : parts) tag.add(String.valueOf(part));
+		return tag.toString();
+	}
+
+	/**
+	 * @param instants Modification times, some may be {@code null}.
+	 * @return The latest one in milliseconds, {@code -1} if there is none.
+	 */
+	static long lastModified(@Nullable Instant... instants) {
+		long lastModified = -1;
+		for (final Instant instant : instants) {
+			if (instant != null) lastModified = Math.max(lastModified, instant.toEpochMilli());
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Same as {@link WebRequest#checkNotModified(String, long)}, and let the client keep the response for revalidation.
+	 * Without it Spring Security forbids storing any response, so a client would have no entity tag to send back.
+	 *
+	 * @param webRequest Current request.
+	 * @param etag Entity tag of the current revision.
+	 * @param lastModified Modification time of the current revision in milliseconds, {@code -1} if unknown.
+	 * @return {@code true} if the client already has the current revision, the response is then a 304.
+	 */
+	static boolean checkNotModified(@Nonnull WebRequest webRequest, @Nonnull String etag, long lastModified) {
+		if (webRequest instanceof ServletWebRequest servletWebRequest && servletWebRequest.getResponse() != null) {
+			// private: only the client may keep it, no-cache: always revalidated before use
+			servletWebRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+		}
+		return webRequest.checkNotModified(etag, lastModified);
+	}
+
+	/**
+	 * Tag a response body with a weak entity tag made from the SHA-256 digest of its JSON serialization. A hash code
+	 * would be too short: with 32 bits, a changed page has a real chance to keep the tag of the old one.
+	 *
+	 * @param webRequest Current request.
+	 * @param objectMapper Mapper used to serialize the body, the same as the response.
+	 * @param body Response body.
+	 * @return The body, or {@code null} if the client already has it, the response is then a 304.
+	 */
+	static <T> @Nullable T unlessNotModified(@Nonnull WebRequest webRequest, @Nonnull ObjectMapper objectMapper,
+			@Nonnull T body) {
+		final byte[] digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(body));
+		} catch (final JsonProcessingException exception) {
+			throw new UncheckedIOException(exception);
+		} catch (final NoSuchAlgorithmException exception) {
+			// every Java platform has SHA-256
+			throw new IllegalStateException(exception);
+		}
+		return checkNotModified(webRequest, "W/\"" + HexFormat.of().formatHex(digest) + '"', -1) ? null : body;
+	}
+}
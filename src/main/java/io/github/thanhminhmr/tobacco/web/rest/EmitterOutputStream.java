@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes to a {@link ResponseBodyEmitter}, in pieces of about {@link #BUFFER_SIZE} bytes instead of one send per
+ * write.
+ */
+final class EmitterOutputStream extends OutputStream {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final @Nonnull ResponseBodyEmitter emitter;
+	private final @Nonnull MediaType mediaType;
+	private final @Nonnull ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+
+	EmitterOutputStream(@Nonnull ResponseBodyEmitter emitter, @Nonnull MediaType mediaType) {
+		this.emitter = emitter;
+		this.mediaType = mediaType;
+	}
+
+	@Override
+	public void write(int value) throws IOException {
+		buffer.write(value);
+		if (buffer.size() >= BUFFER_SIZE) flush();
+	}
+
+	@Override
+	public void write(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+		buffer.write(bytes, offset, length);
+		if (buffer.size() >= BUFFER_SIZE) flush();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (buffer.size() == 0) return;
+		emitter.send(buffer.toByteArray(), mediaType);
+		buffer.reset();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+}
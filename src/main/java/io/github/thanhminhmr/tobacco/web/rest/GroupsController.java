@@ -5,12 +5,19 @@
 package io.github.thanhminhmr.tobacco.web.rest;
 
 import io.github.thanhminhmr.tobacco.dto.model.GroupDto;
+import io.github.thanhminhmr.tobacco.dto.rest.CursorPageDto;
+import io.github.thanhminhmr.tobacco.dto.rest.KeysetCursor;
+import io.github.thanhminhmr.tobacco.dto.rest.ListDto;
 import io.github.thanhminhmr.tobacco.dto.rest.PageDto;
+import io.github.thanhminhmr.tobacco.dto.rest.SliceDto;
 import io.github.thanhminhmr.tobacco.dto.validation.DisplayString;
-import io.github.thanhminhmr.tobacco.presistence.model.EntityMarker;
 import io.github.thanhminhmr.tobacco.presistence.model.Group;
 import io.github.thanhminhmr.tobacco.presistence.model.User;
+import io.github.thanhminhmr.tobacco.presistence.repository.CountEstimator;
 import io.github.thanhminhmr.tobacco.presistence.repository.GroupRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.Keyset;
+import io.github.thanhminhmr.tobacco.presistence.repository.UserRepository;
+import io.github.thanhminhmr.tobacco.security.SaleManagerVisibilityIndex;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import jakarta.persistence.criteria.CriteriaBuilder;
@@ -23,8 +30,10 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -34,10 +43,13 @@ import java.util.Set;
 @RestController
 @RequestMapping("/api/groups")
 public record GroupsController(
-		@Nonnull GroupRepository groupRepository
+		@Nonnull GroupRepository groupRepository,
+		@Nonnull UserRepository userRepository,
+		@Nonnull SaleManagerVisibilityIndex visibilityIndex,
+		@Nonnull CountEstimator countEstimator
 ) {
 	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull PageDto<GroupDto> list(
+	public @Nonnull ListDto<GroupDto> list(
 			@RequestParam(value = "displayName", required = false) @Nullable @DisplayString String displayName,
 			@RequestParam(value = "userId", required = false) @Nullable Long userId,
 			@RequestParam(value = "deleted", required = false) @Nullable Boolean deleted,
@@ -45,13 +57,34 @@ public record GroupsController(
 			@RequestParam(value = "createdAfter", required = false) @Nullable Instant createdAfter,
 			@RequestParam(value = "updatedBefore", required = false) @Nullable Instant updatedBefore,
 			@RequestParam(value = "updatedAfter", required = false) @Nullable Instant updatedAfter,
+			@RequestParam(value = "after", required = false) @Nullable String after,
+			@RequestParam(value = "withTotal", defaultValue = "true") boolean withTotal,
+			@RequestParam(value = "estimatedTotal", defaultValue = "false") boolean estimatedTotal,
 			@RequestParam(value = "pageNumber", defaultValue = "0") @Min(0) int pageNumber,
 			@RequestParam(value = "pageSize", defaultValue = "20") @Min(1) @Max(100) int pageSize) {
-		return EntityMarker.toPageDto(groupRepository.findAll(
-				new GroupListSpecification(displayName, userId, deleted,
-						createdBefore, createdAfter, updatedBefore, updatedAfter),
-				PageRequest.of(pageNumber, pageSize)
-		));
+		final GroupListSpecification specification = new GroupListSpecification(displayName, userId, deleted,
+				createdBefore, createdAfter, updatedBefore, updatedAfter);
+		if (after != null) {
+			// cursor mode, an empty cursor means the first page
+			return CursorPageDto.of(groupRepository.findProjectedSlice(
+					Keyset.after(specification, KeysetCursor.decode(after)),
+					Keyset.pageRequest(pageSize),
+					Group.PROJECTION
+			));
+		}
+		if (!withTotal) {
+			// slice mode, no count query at all
+			return SliceDto.of(groupRepository.findProjectedSlice(specification, PageRequest.of(pageNumber, pageSize),
+					Group.PROJECTION));
+		}
+		if (estimatedTotal) {
+			// approximate number of pages from a cached count
+			return PageDto.of(groupRepository.findProjectedSlice(specification, PageRequest.of(pageNumber, pageSize),
+					Group.PROJECTION),
+					countEstimator.estimate(groupRepository, specification));
+		}
+		return PageDto.of(groupRepository.findProjectedPage(specification, PageRequest.of(pageNumber, pageSize),
+				Group.PROJECTION));
 	}
 
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -64,7 +97,8 @@ public record GroupsController(
 
 	@GetMapping(value = "/{groupId}", produces = MediaType.APPLICATION_JSON_VALUE)
 	public @Nonnull GroupDto get(@PathVariable("groupId") long groupId) {
-		return groupRepository.getReferenceById(groupId).toDto();
+		return groupRepository.findProjectedById(groupId, Group.PROJECTION)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 	}
 
 	@PutMapping(value = "/{groupId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -81,6 +115,22 @@ public record GroupsController(
 		groupRepository.save(group);
 	}
 
+	@PutMapping(value = "/{groupId}/users/{userId}")
+	public void addUser(@PathVariable("groupId") long groupId, @PathVariable("userId") long userId) {
+		final Group group = groupRepository.getReferenceById(groupId);
+		group.getUsers().add(userRepository.getReferenceById(userId));
+		groupRepository.save(group);
+		visibilityIndex.addMembership(groupId, userId);
+	}
+
+	@DeleteMapping(value = "/{groupId}/users/{userId}")
+	public void removeUser(@PathVariable("groupId") long groupId, @PathVariable("userId") long userId) {
+		final Group group = groupRepository.getReferenceById(groupId);
+		group.getUsers().remove(userRepository.getReferenceById(userId));
+		groupRepository.save(group);
+		visibilityIndex.removeMembership(groupId, userId);
+	}
+
 	//region DTO
 
 	public record GroupCreateDto(
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.dto.rest.KeysetCursor;
+import jakarta.annotation.Nonnull;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * The {@code after} parameter of a list endpoint is not a cursor returned by a previous page.
+ */
+@RestControllerAdvice
+public final class InvalidCursorHandler {
+	@ExceptionHandler(KeysetCursor.InvalidCursorException.class)
+	public @Nonnull ProblemDetail handle(@Nonnull KeysetCursor.InvalidCursorException exception) {
+		return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, exception.getMessage());
+	}
+}
@@ -4,16 +4,25 @@
 
 package io.github.thanhminhmr.tobacco.web.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.thanhminhmr.tobacco.dto.model.InvoiceCommentDto;
 import io.github.thanhminhmr.tobacco.dto.model.InvoiceDto;
 import io.github.thanhminhmr.tobacco.dto.model.InvoiceItemDto;
-import io.github.thanhminhmr.tobacco.dto.rest.PageDto;
+import io.github.thanhminhmr.tobacco.dto.model.UserDto;
+import io.github.thanhminhmr.tobacco.dto.rest.*;
 import io.github.thanhminhmr.tobacco.dto.validation.DisplayString;
 import io.github.thanhminhmr.tobacco.presistence.model.*;
+import io.github.thanhminhmr.tobacco.presistence.repository.CountEstimator;
 import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceCommentRepository;
 import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceItemRepository;
 import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.Keyset;
 import io.github.thanhminhmr.tobacco.presistence.repository.ProductRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.UserRepository;
+import io.github.thanhminhmr.tobacco.presistence.search.FullTextIndex;
+import io.github.thanhminhmr.tobacco.security.SaleManagerVisibilityIndex;
+import io.github.thanhminhmr.tobacco.util.CsvLine;
+import io.github.thanhminhmr.tobacco.util.LongHashSet;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import jakarta.persistence.criteria.*;
@@ -21,18 +30,31 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/invoices")
@@ -40,8 +62,18 @@ public record InvoicesController(
 		@Nonnull InvoiceRepository invoiceRepository,
 		@Nonnull InvoiceItemRepository invoiceItemRepository,
 		@Nonnull InvoiceCommentRepository invoiceCommentRepository,
-		@Nonnull ProductRepository productRepository
+		@Nonnull ProductRepository productRepository,
+		@Nonnull UserRepository userRepository,
+		@Nonnull TransactionTemplate transactionTemplate,
+		@Nonnull ObjectMapper objectMapper,
+		@Nonnull SaleManagerVisibilityIndex visibilityIndex,
+		@Nonnull CountEstimator countEstimator,
+		@Nonnull AsyncTaskExecutor taskExecutor,
+		@Value("${tobacco.invoices.export.chunk-size:500}") int exportChunkSize,
+		@Value("${tobacco.invoices.export.timeout:1h}") @Nonnull Duration exportTimeout
 ) {
+	private static final int STATUS_TRANSITION_ATTEMPTS = 3;
+
 	private boolean isUserCanCreateInvoice(@NotNull User currentUser) {
 		return currentUser.getAuthorities().contains(Authority.USER_SALESMAN);
 	}
@@ -51,48 +83,164 @@ public record InvoicesController(
 				&& currentUser.equals(invoice.getAuthor());
 	}
 
-	private boolean isUserAuthorizedForThisInvoice(@Nonnull User currentUser, @Nonnull Invoice invoice) {
+	boolean isUserAuthorizedForThisInvoice(@Nonnull User currentUser, long authorId) {
 		final Set<Authority> authorities = currentUser.getAuthorities();
-		final User author = invoice.getAuthor();
 		if (authorities.contains(Authority.USER_ACCOUNTANT)
 				|| authorities.contains(Authority.USER_MARKET_DIRECTOR)
 				|| authorities.contains(Authority.SUPER_ADMIN)
-				|| authorities.contains(Authority.USER_SALESMAN) && currentUser.equals(author)) {
+				|| authorities.contains(Authority.USER_SALESMAN) && currentUser.getId() == authorId) {
 			// current user is Accountant / Market Director / Super Admin
 			// or current user is Salesman and also the author of the invoice
 			return true;
 		} else if (authorities.contains(Authority.USER_SALE_MANAGER)) {
-			// shortcut
-			if (currentUser.equals(author)) return true;
-			// if current user is a Sale Manager
-			for (final Group group : currentUser.getGroups()) {
-				if (group.getUsers().contains(author)) {
-					// current user is the Sale Manager of the author of the invoice
-					return true;
-				}
-			}
+			// current user is a Sale Manager, check if they are the author or share a group with the author
+			return visibilityIndex.isVisible(currentUser.getId(), authorId);
 		}
 		// not authorized
 		return false;
 	}
 
 	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull PageDto<InvoiceDto> list(@NotNull Authentication authentication,
+	public @Nullable ListDto<InvoiceDto> list(@NotNull Authentication authentication, @Nonnull WebRequest webRequest,
 			@RequestParam(value = "displayDescription", required = false) @Nullable @DisplayString String displayDescription,
 			@RequestParam(value = "invoiceStatus", required = false) @Nullable InvoiceStatus invoiceStatus,
+			@RequestParam(value = "minimumItemCount", required = false) @Nullable @Min(0) Long minimumItemCount,
+			@RequestParam(value = "maximumItemCount", required = false) @Nullable @Min(0) Long maximumItemCount,
+			@RequestParam(value = "minimumTotalAmount", required = false) @Nullable @Min(0) Long minimumTotalAmount,
+			@RequestParam(value = "maximumTotalAmount", required = false) @Nullable @Min(0) Long maximumTotalAmount,
 			@RequestParam(value = "deleted", required = false) @Nullable Boolean deleted,
 			@RequestParam(value = "createdBefore", required = false) @Nullable Instant createdBefore,
 			@RequestParam(value = "createdAfter", required = false) @Nullable Instant createdAfter,
 			@RequestParam(value = "updatedBefore", required = false) @Nullable Instant updatedBefore,
 			@RequestParam(value = "updatedAfter", required = false) @Nullable Instant updatedAfter,
+			@RequestParam(value = "sortBy", required = false) @Nullable InvoiceSortBy sortBy,
+			@RequestParam(value = "sortDirection", defaultValue = "ASC") @Nonnull Sort.Direction sortDirection,
+			@RequestParam(value = "after", required = false) @Nullable String after,
+			@RequestParam(value = "withTotal", defaultValue = "true") boolean withTotal,
+			@RequestParam(value = "estimatedTotal", defaultValue = "false") boolean estimatedTotal,
 			@RequestParam(value = "pageNumber", defaultValue = "0") @Min(0) int pageNumber,
 			@RequestParam(value = "pageSize", defaultValue = "20") @Min(1) @Max(100) int pageSize) {
 		final User currentUser = AccountController.getCurrentUser(authentication);
-		return EntityMarker.toPageDto(invoiceRepository.findAll(
-				new InvoiceListSpecification(currentUser, displayDescription, invoiceStatus,
-						deleted, createdBefore, createdAfter, updatedBefore, updatedAfter),
-				PageRequest.of(pageNumber, pageSize)
-		));
+		final InvoiceListSpecification specification = new InvoiceListSpecification(visibilityIndex, currentUser,
+				displayDescription, invoiceStatus, minimumItemCount, maximumItemCount, minimumTotalAmount,
+				maximumTotalAmount, deleted, createdBefore, createdAfter, updatedBefore, updatedAfter);
+		if (after != null && sortBy != null) {
+			// cursors are always ordered by creation time
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot sort a cursor page.");
+		}
+		final PageRequest pageRequest = sortBy != null
+				? PageRequest.of(pageNumber, pageSize, Sort.by(sortDirection, sortBy.attribute, "id"))
+				: PageRequest.of(pageNumber, pageSize);
+		final ListDto<InvoiceDto> page;
+		if (after != null) {
+			// cursor mode, an empty cursor means the first page
+			page = CursorPageDto.of(invoiceRepository.findProjectedSlice(
+					Keyset.after(specification, KeysetCursor.decode(after)),
+					Keyset.pageRequest(pageSize),
+					Invoice.PROJECTION
+			));
+		} else if (!withTotal) {
+			// slice mode, no count query at all
+			page = SliceDto.of(invoiceRepository.findProjectedSlice(specification, pageRequest, Invoice.PROJECTION));
+		} else if (estimatedTotal) {
+			// approximate number of pages from a cached count
+			page = PageDto.of(invoiceRepository.findProjectedSlice(specification, pageRequest, Invoice.PROJECTION),
+					countEstimator.estimate(invoiceRepository, specification));
+		} else {
+			page = PageDto.of(invoiceRepository.findProjectedPage(specification, pageRequest, Invoice.PROJECTION));
+		}
+		// a polling client gets a 304 instead of the same page again
+		return ETags.unlessNotModified(webRequest, objectMapper, page);
+	}
+
+	/**
+	 * Export every invoice visible to the current user and matching the filters, ordered by creation time. Rows are
+	 * read in keyset chunks and sent as they come, so memory use does not depend on the size of the export.
+	 * <p>
+	 * Every chunk is read in a short read-only transaction of its own. A single transaction for the whole export would
+	 * hold a connection, and with virtual threads a database permit, for as long as the client takes to download it,
+	 * and in WAL mode, as in production, keep the database file from being checkpointed all that time. The price is
+	 * that the export is not a snapshot: an invoice changed while the export runs may be exported before or after the
+	 * change, an invoice created meanwhile is exported at the end.
+	 */
+	@GetMapping(value = "/export")
+	public @Nonnull ResponseEntity<ResponseBodyEmitter> export(@NotNull Authentication authentication,
+			@RequestParam(value = "displayDescription", required = false) @Nullable @DisplayString String displayDescription,
+			@RequestParam(value = "invoiceStatus", required = false) @Nullable InvoiceStatus invoiceStatus,
+			@RequestParam(value = "minimumItemCount", required = false) @Nullable @Min(0) Long minimumItemCount,
+			@RequestParam(value = "maximumItemCount", required = false) @Nullable @Min(0) Long maximumItemCount,
+			@RequestParam(value = "minimumTotalAmount", required = false) @Nullable @Min(0) Long minimumTotalAmount,
+			@RequestParam(value = "maximumTotalAmount", required = false) @Nullable @Min(0) Long maximumTotalAmount,
+			@RequestParam(value = "deleted", required = false) @Nullable Boolean deleted,
+			@RequestParam(value = "createdBefore", required = false) @Nullable Instant createdBefore,
+			@RequestParam(value = "createdAfter", required = false) @Nullable Instant createdAfter,
+			@RequestParam(value = "updatedBefore", required = false) @Nullable Instant updatedBefore,
+			@RequestParam(value = "updatedAfter", required = false) @Nullable Instant updatedAfter,
+			@RequestParam(value = "format", defaultValue = "NDJSON") @Nonnull InvoiceExportFormat format) {
+		final User currentUser = AccountController.getCurrentUser(authentication);
+		final InvoiceListSpecification specification = new InvoiceListSpecification(visibilityIndex, currentUser,
+				displayDescription, invoiceStatus, minimumItemCount, maximumItemCount, minimumTotalAmount,
+				maximumTotalAmount, deleted, createdBefore, createdAfter, updatedBefore, updatedAfter);
+		// only exports get this long, every other asynchronous request keeps the default timeout
+		final ResponseBodyEmitter emitter = new ResponseBodyEmitter(exportTimeout.toMillis());
+		// the body is written on another thread, each chunk is read in its own read-only transaction there
+		final TransactionTemplate readOnlyTemplate
+				= new TransactionTemplate(Objects.requireNonNull(transactionTemplate.getTransactionManager()));
+		readOnlyTemplate.setReadOnly(true);
+		taskExecutor.execute(() -> {
+			try (final OutputStream outputStream = new EmitterOutputStream(emitter, format.mediaType)) {
+				final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+				if (format == InvoiceExportFormat.CSV) writeCsvHeader(writer);
+				KeysetCursor cursor = null;
+				while (true) {
+					final Specification<Invoice> chunkSpecification = Keyset.after(specification, cursor);
+					final Slice<InvoiceDto> invoices = Objects.requireNonNull(readOnlyTemplate.execute(status ->
+							invoiceRepository.findProjectedSlice(chunkSpecification,
+									Keyset.pageRequest(exportChunkSize), Invoice.PROJECTION)));
+					// written outside the transaction, a slow client does not keep the connection
+					for (final InvoiceDto invoice : invoices) {
+						switch (format) {
+							case NDJSON -> writeNdjson(invoice, writer);
+							case CSV -> writeCsv(invoice, writer);
+						}
+					}
+					if (!invoices.hasNext()) break;
+					cursor = KeysetCursor.of(invoices.getContent().get(invoices.getNumberOfElements() - 1));
+				}
+				writer.flush();
+			} catch (final IOException | RuntimeException exception) {
+				// also when the client is gone or the export timed out
+				emitter.completeWithError(exception);
+				return;
+			}
+			emitter.complete();
+		});
+		return ResponseEntity.ok()
+				.contentType(format.mediaType)
+				.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+						.filename("invoices." + format.extension)
+						.build()
+						.toString())
+				.body(emitter);
+	}
+
+	private void writeNdjson(@Nonnull InvoiceDto invoice, @Nonnull Writer writer) throws IOException {
+		writer.write(objectMapper.writeValueAsString(invoice));
+		writer.write('\n');
+	}
+
+	private static void writeCsvHeader(@Nonnull Writer writer) throws IOException {
+		writer.write(CsvLine.join("id", "authorId", "authorUsername", "displayDescription", "status", "itemCount",
+				"totalAmount", "deleted", "createdAt", "updatedAt"));
+		writer.write("\r\n");
+	}
+
+	private static void writeCsv(@Nonnull InvoiceDto invoice, @Nonnull Writer writer) throws IOException {
+		final UserDto author = Objects.requireNonNull(invoice.author());
+		writer.write(CsvLine.join(invoice.id(), author.id(), author.username(), invoice.displayDescription(),
+				invoice.status(), invoice.itemCount(), invoice.totalAmount(), invoice.deleted(),
+				invoice.createdAt(), invoice.updatedAt()));
+		writer.write("\r\n");
 	}
 
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -100,10 +248,13 @@ public record InvoicesController(
 			@RequestBody @NotNull @Valid InvoiceCreateDto dto) {
 		final User currentUser = AccountController.getCurrentUser(authentication);
 		if (isUserCanCreateInvoice(currentUser)) {
+			// a principal from a bearer token only has its id, the author is loaded from the database
 			return invoiceRepository.save(new Invoice()
-					.setAuthor(currentUser)
+					.setAuthor(userRepository.getReferenceById(currentUser.getId()))
 					.setDisplayDescription(dto.displayDescription())
 					.setStatus(InvoiceStatus.CREATED)
+					.setItemCount(0L)
+					.setTotalAmount(0L)
 					.setDeleted(false)
 			).toDto();
 		} else {
@@ -112,17 +263,96 @@ public record InvoicesController(
 		}
 	}
 
+	/**
+	 * Create an invoice together with its items and an optional first comment, in a single transaction. All products
+	 * are loaded with one query and the inserts are batched.
+	 */
+	// the items are inserted in batches, up to 1000 items take around twenty statements
+	@SqlBudget(50)
+	@PostMapping(value = "/composite", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public @Nonnull InvoiceCompositeDto createComposite(@NotNull Authentication authentication,
+			@RequestBody @NotNull @Valid InvoiceCompositeCreateDto dto) {
+		final User currentUser = AccountController.getCurrentUser(authentication);
+		if (!isUserCanCreateInvoice(currentUser)) {
+			// Only salesman can create invoice
+			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+		}
+		final Set<Long> productIds = new HashSet<>();
+		for (final InvoiceCreateItemDto itemDto : dto.items()) productIds.add(itemDto.productId());
+		return transactionTemplate.execute(status -> {
+			// resolve and check every product at once
+			final Map<Long, Product> products = new HashMap<>();
+			for (final Product product : productRepository.findAllById(productIds)) {
+				if (!product.getDeleted()) products.put(product.getId(), product);
+			}
+			if (products.size() < productIds.size()) {
+				final List<Long> unavailableIds = productIds.stream()
+						.filter(productId -> !products.containsKey(productId))
+						.sorted()
+						.toList();
+				// Products are not available
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Products not available: " + unavailableIds);
+			}
+			// build the whole invoice, saving it cascades to the items and the comment
+			final User author = userRepository.getReferenceById(currentUser.getId());
+			final Invoice invoice = new Invoice()
+					.setAuthor(author)
+					.setDisplayDescription(dto.displayDescription())
+					.setStatus(InvoiceStatus.CREATED)
+					.setDeleted(false);
+			final List<InvoiceItem> items = new ArrayList<>(dto.items().size());
+			long totalAmount = 0;
+			for (final InvoiceCreateItemDto itemDto : dto.items()) {
+				final Product product = products.get(itemDto.productId());
+				items.add(new InvoiceItem()
+						.setInvoice(invoice)
+						.setProduct(product)
+						.setUnitPrice(product.getCurrentPrice())
+						.setQuantity(itemDto.quantity())
+						.setDeleted(false));
+				totalAmount = Math.addExact(totalAmount,
+						Math.multiplyExact(product.getCurrentPrice(), itemDto.quantity()));
+			}
+			final List<InvoiceComment> comments = new ArrayList<>(1);
+			if (dto.displayComment() != null) {
+				comments.add(new InvoiceComment()
+						.setInvoice(invoice)
+						.setUser(author)
+						.setDisplayComment(dto.displayComment())
+						.setStatusBefore(InvoiceStatus.CREATED)
+						.setStatusAfter(InvoiceStatus.CREATED)
+						.setDeleted(false));
+			}
+			invoiceRepository.save(invoice
+					.setItems(items)
+					.setComments(comments)
+					.setItemCount((long) items.size())
+					.setTotalAmount(totalAmount));
+			return new InvoiceCompositeDto(
+					invoice.toDto(),
+					EntityMarker.toDtos(items),
+					comments.isEmpty() ? null : comments.get(0).toDto()
+			);
+		});
+	}
+
 	@GetMapping(value = "/{invoiceId}", produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull InvoiceDto get(@NotNull Authentication authentication,
+	public @Nullable InvoiceDto get(@NotNull Authentication authentication, @Nonnull WebRequest webRequest,
 			@PathVariable("invoiceId") long invoiceId) {
 		final User currentUser = AccountController.getCurrentUser(authentication);
-		final Invoice invoice = invoiceRepository.getReferenceById(invoiceId);
-		if (isUserAuthorizedForThisInvoice(currentUser, invoice)) {
-			return invoice.toDto();
-		} else {
+		final InvoiceRepository.InvoiceState state = invoiceRepository.findStateById(invoiceId)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+		if (!isUserAuthorizedForThisInvoice(currentUser, state.getAuthorId())) {
 			// user are not authorized to get this invoice
 			throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
 		}
+		// the client already has this revision of the invoice and its author, nothing else to load
+		if (ETags.checkNotModified(webRequest, ETags.of(invoiceId, state.getVersion(), state.getAuthorUpdatedAt()),
+				ETags.lastModified(state.getUpdatedAt(), state.getAuthorUpdatedAt()))) {
+			return null;
+		}
+		return invoiceRepository.findProjectedById(invoiceId, Invoice.PROJECTION)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 	}
 
 	@PutMapping(value = "/{invoiceId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -152,13 +382,23 @@ public record InvoicesController(
 
 
 	@GetMapping(value = "/{invoiceId}/comments", produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull List<InvoiceCommentDto> getComments(@NotNull Authentication authentication,
-			@PathVariable("invoiceId") long invoiceId) {
+	public @Nullable List<InvoiceCommentDto> getComments(@NotNull Authentication authentication,
+			@Nonnull WebRequest webRequest, @PathVariable("invoiceId") long invoiceId) {
 		final User currentUser = AccountController.getCurrentUser(authentication);
-		final Invoice invoice = invoiceRepository.getReferenceById(invoiceId);
+		final long authorId = invoiceRepository.findAuthorIdById(invoiceId)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 		// check if user have the authorization to view comments
-		if (isUserAuthorizedForThisInvoice(currentUser, invoice)) {
-			return EntityMarker.toDtos(invoice.getComments());
+		if (isUserAuthorizedForThisInvoice(currentUser, authorId)) {
+			final InvoiceCommentRepository.CommentsRevision revision
+					= invoiceCommentRepository.findRevisionByInvoiceId(invoiceId);
+			// the client already has these comments, nothing else to load
+			if (ETags.checkNotModified(webRequest, ETags.of(invoiceId, revision.getCommentCount(),
+							revision.getLastUpdatedAt(), revision.getLastUserUpdatedAt()),
+					ETags.lastModified(revision.getLastUpdatedAt(), revision.getLastUserUpdatedAt()))) {
+				return null;
+			}
+			return invoiceCommentRepository.findProjectedList(new InvoiceChildSpecification<>(invoiceId),
+					Keyset.SORT, InvoiceComment.PROJECTION);
 		} else {
 			// Current user doesn't have permission to view invoice items for this invoice.
 			throw new ResponseStatusException(HttpStatus.FORBIDDEN);
@@ -170,34 +410,61 @@ public record InvoicesController(
 			@PathVariable("invoiceId") long invoiceId,
 			@RequestBody @NotNull @Valid InvoiceCreateCommentDto dto) {
 		final User currentUser = AccountController.getCurrentUser(authentication);
-		final Invoice invoice = invoiceRepository.getReferenceById(invoiceId);
-		// check if user have the authorization to comment
-		if (isUserAuthorizedForThisInvoice(currentUser, invoice)) {
-			// create the comment and change the status accordingly
-			final InvoiceComment comment = invoiceCommentRepository.save(new InvoiceComment()
-					.setInvoice(invoice)
-					.setUser(currentUser)
-					.setDisplayComment(dto.displayComment())
-					.setStatusBefore(invoice.getStatus())
-					.setStatusAfter(dto.statusAfter())
-					.setDeleted(false)
-			);
-			invoiceRepository.save(invoice.setStatus(dto.statusAfter()));
-			return comment.toDto();
-		} else {
-			// Current user doesn't have permission to create comment for this invoice.
-			throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+		// the status is changed only if nobody changed the invoice since it was read, otherwise read it again
+		for (int attempt = 1; attempt <= STATUS_TRANSITION_ATTEMPTS; attempt++) {
+			final InvoiceCommentDto comment;
+			try {
+				comment = transactionTemplate.execute(status -> {
+					final InvoiceRepository.InvoiceState state = invoiceRepository.findStateById(invoiceId)
+							.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+					// check if user have the authorization to comment
+					if (!isUserAuthorizedForThisInvoice(currentUser, state.getAuthorId())) {
+						// Current user doesn't have permission to create comment for this invoice.
+						throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+					}
+					// the comment first: reserving its id is a write, which the transition below would have to wait for
+					final InvoiceComment invoiceComment = invoiceCommentRepository.save(new InvoiceComment()
+							.setInvoice(invoiceRepository.getReferenceById(invoiceId))
+							.setUser(userRepository.getReferenceById(currentUser.getId()))
+							.setDisplayComment(dto.displayComment())
+							.setStatusBefore(state.getStatus())
+							.setStatusAfter(dto.statusAfter())
+							.setDeleted(false));
+					if (invoiceRepository.transitionStatus(invoiceId, state.getStatus(), state.getVersion(),
+							dto.statusAfter(), Instant.now()) == 0) {
+						// changed since it was read, drop the comment
+						status.setRollbackOnly();
+						return null;
+					}
+					return invoiceComment.toDto();
+				});
+			} catch (final ConcurrencyFailureException exception) {
+				// SQLite transactions are serializable, a concurrent change usually shows up as a busy database
+				continue;
+			}
+			if (comment != null) return comment;
 		}
+		// the invoice keeps changing under us
+		throw new ResponseStatusException(HttpStatus.CONFLICT, "Invoice was modified concurrently, try again.");
 	}
 
 	@GetMapping(value = "/{invoiceId}/items", produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull List<InvoiceItemDto> getItems(@NotNull Authentication authentication,
-			@PathVariable("invoiceId") long invoiceId) {
+	public @Nullable List<InvoiceItemDto> getItems(@NotNull Authentication authentication,
+			@Nonnull WebRequest webRequest, @PathVariable("invoiceId") long invoiceId) {
 		final User currentUser = AccountController.getCurrentUser(authentication);
-		final Invoice invoice = invoiceRepository.getReferenceById(invoiceId);
+		final long authorId = invoiceRepository.findAuthorIdById(invoiceId)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 		// check if user have the authorization to view invoice items
-		if (isUserAuthorizedForThisInvoice(currentUser, invoice)) {
-			return EntityMarker.toDtos(invoice.getItems());
+		if (isUserAuthorizedForThisInvoice(currentUser, authorId)) {
+			final InvoiceItemRepository.ItemsRevision revision = invoiceItemRepository.findRevisionByInvoiceId(invoiceId);
+			// the client already has these items, nothing else to load
+			if (ETags.checkNotModified(webRequest, ETags.of(invoiceId, revision.getItemCount(),
+							revision.getLastUpdatedAt(), revision.getLastProductUpdatedAt()),
+					ETags.lastModified(revision.getLastUpdatedAt(), revision.getLastProductUpdatedAt()))) {
+				return null;
+			}
+			return invoiceItemRepository.findProjectedList(new InvoiceChildSpecification<>(invoiceId),
+					Keyset.SORT, InvoiceItem.PROJECTION);
 		} else {
 			// Current user doesn't have permission to view invoice items for this invoice.
 			throw new ResponseStatusException(HttpStatus.FORBIDDEN);
@@ -227,15 +494,52 @@ public record InvoicesController(
 			// Invoice item is not modifiable
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
 		}
-		// save and return
-		final InvoiceItem item = invoiceItemRepository.save(new InvoiceItem()
-				.setInvoice(invoice)
-				.setProduct(product)
-				.setUnitPrice(product.getCurrentPrice())
-				.setQuantity(dto.quantity())
-				.setDeleted(false)
-		);
-		return item.toDto();
+		// save the item and update the invoice totals together
+		return transactionTemplate.execute(status -> {
+			final InvoiceItem item = invoiceItemRepository.save(new InvoiceItem()
+					.setInvoice(invoice)
+					.setProduct(product)
+					.setUnitPrice(product.getCurrentPrice())
+					.setQuantity(dto.quantity())
+					.setDeleted(false)
+			);
+			// the status checked above was read before this transaction, the invoice may be approved since then
+			if (invoiceRepository.addToTotals(invoiceId, 1,
+					Math.multiplyExact(item.getUnitPrice(), item.getQuantity()), Instant.now()) == 0) {
+				// Invoice item is not modifiable
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+			}
+			return item.toDto();
+		});
+	}
+
+	@DeleteMapping(value = "/{invoiceId}/items/{itemId}", produces = MediaType.APPLICATION_JSON_VALUE)
+	public void deleteItem(@PathVariable("invoiceId") long invoiceId,
+			@PathVariable("itemId") long itemId,
+			@NotNull Authentication authentication) {
+		final User currentUser = AccountController.getCurrentUser(authentication);
+		final InvoiceItem item = invoiceItemRepository.findById(itemId)
+				.filter(invoiceItem -> invoiceItem.getInvoice().getId() == invoiceId)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+		final Invoice invoice = item.getInvoice();
+		// check if the current user is the author of this invoice
+		if (!isUserAuthorOfThisInvoice(currentUser, invoice)) {
+			// Current user doesn't have permission to delete invoice item of this invoice
+			throw new ResponseStatusException(HttpStatus.FORBIDDEN);
+		}
+		if (invoice.getStatus() != InvoiceStatus.CREATED) {
+			// Invoice item is not modifiable
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+		}
+		// only the call that actually deletes the item takes it out of the totals
+		transactionTemplate.executeWithoutResult(status -> {
+			final Instant now = Instant.now();
+			if (invoiceItemRepository.softDelete(itemId, now) > 0 && invoiceRepository.addToTotals(invoiceId, -1,
+					-Math.multiplyExact(item.getUnitPrice(), item.getQuantity()), now) == 0) {
+				// the invoice was approved since its status was checked, Invoice item is not modifiable
+				throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+			}
+		});
 	}
 
 
@@ -263,20 +567,103 @@ public record InvoicesController(
 	) {
 	}
 
+	public record InvoiceCompositeCreateDto(
+			@NotNull @DisplayString String displayDescription,
+			@NotNull @Size(max = 1000) List<@NotNull @Valid InvoiceCreateItemDto> items,
+			@Nullable @DisplayString String displayComment
+	) {
+	}
+
+	public record InvoiceCompositeDto(
+			@Nonnull InvoiceDto invoice,
+			@Nonnull List<InvoiceItemDto> items,
+			@Nullable InvoiceCommentDto comment
+	) {
+	}
+
+	public enum InvoiceExportFormat {
+		NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+		CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv"),
+		;
+
+
+		private final @Nonnull MediaType mediaType;
+		private final @Nonnull String extension;
+
+		InvoiceExportFormat(@Nonnull MediaType mediaType, @Nonnull String extension) {
+			this.mediaType = mediaType;
+			this.extension = extension;
+		}
+	}
+
+	public enum InvoiceSortBy {
+		CREATED_AT("createdAt"),
+		UPDATED_AT("updatedAt"),
+		ITEM_COUNT("itemCount"),
+		TOTAL_AMOUNT("totalAmount"),
+		;
+
+
+		private final @Nonnull String attribute;
+
+		InvoiceSortBy(@Nonnull String attribute) {
+			this.attribute = attribute;
+		}
+	}
+
 	//endregion DTO
 
 	//region Specification
 
-	private record InvoiceListSpecification(
+	record InvoiceListSpecification(
+			@Nonnull SaleManagerVisibilityIndex visibilityIndex,
 			@Nonnull User currentUser,
 			@Nullable @DisplayString String displayDescription,
 			@Nullable InvoiceStatus invoiceStatus,
+			@Nullable @Min(0) Long minimumItemCount,
+			@Nullable @Min(0) Long maximumItemCount,
+			@Nullable @Min(0) Long minimumTotalAmount,
+			@Nullable @Min(0) Long maximumTotalAmount,
 			@Nullable Boolean deleted,
 			@Nullable Instant createdBefore,
 			@Nullable Instant createdAfter,
 			@Nullable Instant updatedBefore,
 			@Nullable Instant updatedAfter
-	) implements Specification<Invoice> {
+	) implements CountEstimator.KeyedSpecification<Invoice> {
+		/**
+		 * Above this many visible authors, the membership subquery is used instead of the IN-list: every id is a bound
+		 * parameter, SQLite limits their number per statement, and a long list is parsed again for every query.
+		 */
+		static final int MAXIMUM_AUTHOR_IN_LIST = 500;
+
+		static @Nonnull Predicate authorIn(@Nonnull Root<Invoice> invoiceRoot, @Nonnull LongHashSet authorIds) {
+			return invoiceRoot.get("author").get("id").in(Arrays.stream(authorIds.toArray()).boxed().toList());
+		}
+
+		static @Nonnull Predicate authorSharesGroup(@Nonnull Root<Invoice> invoiceRoot,
+				@Nonnull CriteriaQuery<?> query, @Nonnull CriteriaBuilder builder, long userId) {
+			final Subquery<Long> subquery = query.subquery(Long.class);
+			final Root<Group> groupRoot = subquery.from(Group.class);
+			final Join<Group, User> manager = groupRoot.join("users");
+			final Join<Group, User> member = groupRoot.join("users");
+			return builder.or(
+					builder.equal(invoiceRoot.get("author").get("id"), userId),
+					builder.exists(subquery.select(groupRoot.get("id")).where(
+							builder.equal(manager.get("id"), userId),
+							builder.equal(member.get("id"), invoiceRoot.get("author").get("id"))
+					))
+			);
+		}
+
+		// the user and the visibility index are not values, the user is known by its id and authorities instead
+		@Override
+		public @Nonnull Object countKey() {
+			return Arrays.asList(InvoiceListSpecification.class, currentUser.getId(),
+					Set.copyOf(currentUser.getAuthorities()), displayDescription, invoiceStatus, minimumItemCount,
+					maximumItemCount, minimumTotalAmount, maximumTotalAmount, deleted, createdBefore, createdAfter,
+					updatedBefore, updatedAfter);
+		}
+
 		@Override
 		public @Nonnull Predicate toPredicate(@Nonnull Root<Invoice> invoiceRoot,
 				@Nonnull CriteriaQuery<?> query,
@@ -290,29 +677,37 @@ public record InvoicesController(
 				// they can view all invoice, so no need for a filter
 				// intentionally left blank
 			} else if (authorities.contains(Authority.USER_SALE_MANAGER)) {
-				final Subquery<Group> subquery = query.subquery(Group.class);
-				final Root<Group> groupRoot = subquery.from(Group.class);
-				final Path<Set<User>> groupUsers = groupRoot.get("users");
-				predicates.add(builder.or(
-						builder.equal(invoiceRoot.get("author"), currentUser),
-						builder.exists(subquery.select(groupRoot)
-								.where(builder.and(
-										builder.isMember(currentUser, groupUsers),
-										builder.isMember(invoiceRoot.get("author"), groupUsers)
-								)))
-				));
+				// the sale manager can view the invoices of every author sharing a group with them, including their
+				// own; the visible authors are precomputed so this is usually a plain IN-list on the author id
+				final LongHashSet visibleAuthors = visibilityIndex.getVisibleAuthors(currentUser.getId());
+				predicates.add(visibleAuthors.size() <= MAXIMUM_AUTHOR_IN_LIST
+						? authorIn(invoiceRoot, visibleAuthors)
+						: authorSharesGroup(invoiceRoot, query, builder, currentUser.getId()));
 			} else if (authorities.contains(Authority.USER_SALESMAN)) {
 				// if the salesman is the author then he can view the invoice
-				predicates.add(builder.equal(invoiceRoot.get("authorId"), currentUser.getId()));
+				predicates.add(builder.equal(invoiceRoot.get("author").get("id"), currentUser.getId()));
 			} else {
 				// unknown authority, filter everything
 				predicates.add(builder.or());
 			}
 			if (displayDescription != null) {
-				predicates.add(builder.like(invoiceRoot.get("displayDescription"), '%' + displayDescription + '%'));
+				predicates.add(FullTextIndex.match(builder, invoiceRoot, FullTextIndex.INVOICES,
+						"display_description", "displayDescription", displayDescription));
 			}
 			if (invoiceStatus != null) {
-				predicates.add(builder.equal(invoiceRoot.get("invoiceStatus"), invoiceStatus));
+				predicates.add(builder.equal(invoiceRoot.get("status"), invoiceStatus));
+			}
+			if (minimumItemCount != null) {
+				predicates.add(builder.greaterThanOrEqualTo(invoiceRoot.get("itemCount"), minimumItemCount));
+			}
+			if (maximumItemCount != null) {
+				predicates.add(builder.lessThanOrEqualTo(invoiceRoot.get("itemCount"), maximumItemCount));
+			}
+			if (minimumTotalAmount != null) {
+				predicates.add(builder.greaterThanOrEqualTo(invoiceRoot.get("totalAmount"), minimumTotalAmount));
+			}
+			if (maximumTotalAmount != null) {
+				predicates.add(builder.lessThanOrEqualTo(invoiceRoot.get("totalAmount"), maximumTotalAmount));
 			}
 			if (deleted != null) {
 				predicates.add(builder.equal(invoiceRoot.get("deleted"), deleted));
@@ -333,5 +728,19 @@ public record InvoicesController(
 		}
 	}
 
+	/**
+	 * Every item or comment of an invoice.
+	 *
+	 * @param <E> {@link InvoiceItem} or {@link InvoiceComment}.
+	 */
+	private record InvoiceChildSpecification<E>(long invoiceId) implements Specification<E> {
+		@Override
+		public @Nonnull Predicate toPredicate(@Nonnull Root<E> root,
+				@Nonnull CriteriaQuery<?> query,
+				@Nonnull CriteriaBuilder builder) {
+			return builder.equal(root.get("invoice").get("id"), invoiceId);
+		}
+	}
+
 	//endregion Specification
 }
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * An entity saved with a {@code @Version} that is no longer the current one was modified by someone else in the
+ * meantime: the client has to read it again, which is a conflict, not a server error.
+ */
+@RestControllerAdvice
+public final class OptimisticLockingFailureHandler {
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public @Nonnull ProblemDetail handle(@Nonnull OptimisticLockingFailureException exception) {
+		return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, "Modified concurrently, try again.");
+	}
+}
@@ -4,38 +4,71 @@
 
 package io.github.thanhminhmr.tobacco.web.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.thanhminhmr.tobacco.dto.model.ProductDto;
+import io.github.thanhminhmr.tobacco.dto.rest.CursorPageDto;
+import io.github.thanhminhmr.tobacco.dto.rest.KeysetCursor;
+import io.github.thanhminhmr.tobacco.dto.rest.ListDto;
 import io.github.thanhminhmr.tobacco.dto.rest.PageDto;
+import io.github.thanhminhmr.tobacco.dto.rest.SliceDto;
 import io.github.thanhminhmr.tobacco.dto.validation.DisplayString;
-import io.github.thanhminhmr.tobacco.presistence.model.EntityMarker;
 import io.github.thanhminhmr.tobacco.presistence.model.Product;
+import io.github.thanhminhmr.tobacco.presistence.repository.CountEstimator;
+import io.github.thanhminhmr.tobacco.presistence.repository.Keyset;
 import io.github.thanhminhmr.tobacco.presistence.repository.ProductRepository;
+import io.github.thanhminhmr.tobacco.presistence.search.FullTextIndex;
+import io.github.thanhminhmr.tobacco.util.CsvLine;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/products")
 public record ProductsController(
-		@Nonnull ProductRepository productRepository
+		@Nonnull ProductRepository productRepository,
+		@Nonnull EntityManager entityManager,
+		@Nonnull TransactionTemplate transactionTemplate,
+		@Nonnull Validator validator,
+		@Nonnull ObjectMapper objectMapper,
+		@Nonnull CountEstimator countEstimator
 ) {
+	private static final @Nonnull Logger LOGGER = LoggerFactory.getLogger(ProductsController.class);
+	private static final int IMPORT_CHUNK_SIZE = 500;
+	private static final int IMPORT_MAXIMUM_ERRORS = 1000;
+	private static final @Nonnull List<String> IMPORT_CSV_COLUMNS
+			= List.of("id", "displayName", "displayDescription", "displayUnit", "currentPrice");
+
 	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull PageDto<ProductDto> list(
+	public @Nullable ListDto<ProductDto> list(@Nonnull WebRequest webRequest,
 			@RequestParam(value = "displayName", required = false) @Nullable @DisplayString String displayName,
 			@RequestParam(value = "displayDescription", required = false) @Nullable @DisplayString String displayDescription,
 			@RequestParam(value = "displayUnit", required = false) @Nullable @DisplayString String displayUnit,
@@ -46,13 +79,36 @@ public record ProductsController(
 			@RequestParam(value = "createdAfter", required = false) @Nullable Instant createdAfter,
 			@RequestParam(value = "updatedBefore", required = false) @Nullable Instant updatedBefore,
 			@RequestParam(value = "updatedAfter", required = false) @Nullable Instant updatedAfter,
+			@RequestParam(value = "after", required = false) @Nullable String after,
+			@RequestParam(value = "withTotal", defaultValue = "true") boolean withTotal,
+			@RequestParam(value = "estimatedTotal", defaultValue = "false") boolean estimatedTotal,
 			@RequestParam(value = "pageNumber", defaultValue = "0") @Min(0) int pageNumber,
 			@RequestParam(value = "pageSize", defaultValue = "20") @Min(1) @Max(100) int pageSize) {
-		return EntityMarker.toPageDto(productRepository.findAll(
-				new ProductListSpecification(displayName, displayDescription, displayUnit, minimumPrice, maximumPrice,
-						deleted, createdBefore, createdAfter, updatedBefore, updatedAfter),
-				PageRequest.of(pageNumber, pageSize)
-		));
+		final ProductListSpecification specification = new ProductListSpecification(displayName, displayDescription,
+				displayUnit, minimumPrice, maximumPrice, deleted, createdBefore, createdAfter, updatedBefore, updatedAfter);
+		final ListDto<ProductDto> page;
+		if (after != null) {
+			// cursor mode, an empty cursor means the first page
+			page = CursorPageDto.of(productRepository.findProjectedSlice(
+					Keyset.after(specification, KeysetCursor.decode(after)),
+					Keyset.pageRequest(pageSize),
+					Product.PROJECTION
+			));
+		} else if (!withTotal) {
+			// slice mode, no count query at all
+			page = SliceDto.of(productRepository.findProjectedSlice(specification, PageRequest.of(pageNumber, pageSize),
+					Product.PROJECTION));
+		} else if (estimatedTotal) {
+			// approximate number of pages from a cached count
+			page = PageDto.of(productRepository.findProjectedSlice(specification, PageRequest.of(pageNumber, pageSize),
+					Product.PROJECTION),
+					countEstimator.estimate(productRepository, specification));
+		} else {
+			page = PageDto.of(productRepository.findProjectedPage(specification, PageRequest.of(pageNumber, pageSize),
+					Product.PROJECTION));
+		}
+		// a polling client gets a 304 instead of the same page again
+		return ETags.unlessNotModified(webRequest, objectMapper, page);
 	}
 
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -66,14 +122,69 @@ public record ProductsController(
 		).toDto();
 	}
 
+	/**
+	 * Import products from newline-delimited JSON, one {@link ProductImportDto} per line.
+	 */
+	@SqlBudget(Integer.MAX_VALUE)
+	@PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+	public @Nonnull ProductImportResultDto importNdjson(@Nonnull InputStream body) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+		return importRows(reader, 0, line -> Objects.requireNonNull(
+				objectMapper.readValue(line, ProductImportDto.class), "Row is null."));
+	}
+
+	/**
+	 * Import products from CSV. The first line is a header naming the columns, among {@link #IMPORT_CSV_COLUMNS};
+	 * the {@code id} column is optional.
+	 */
+	@SqlBudget(Integer.MAX_VALUE)
+	@PostMapping(value = "/import", consumes = "text/csv", produces = MediaType.APPLICATION_JSON_VALUE)
+	public @Nonnull ProductImportResultDto importCsv(@Nonnull InputStream body) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+		final String header = reader.readLine();
+		if (header == null) return new ProductImportResultDto(0, 0, 0, 0, List.of());
+		final List<String> columns = CsvLine.split(header).stream().map(String::trim).toList();
+		if (!IMPORT_CSV_COLUMNS.containsAll(columns) || new HashSet<>(columns).size() < columns.size()
+				|| !columns.containsAll(IMPORT_CSV_COLUMNS.subList(1, IMPORT_CSV_COLUMNS.size()))) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+					"CSV header must contain the columns " + IMPORT_CSV_COLUMNS + ", only id is optional.");
+		}
+		return importRows(reader, 1, line -> {
+			final List<String> fields = CsvLine.split(line);
+			if (fields.size() != columns.size()) {
+				throw new IllegalArgumentException("Expected " + columns.size() + " fields, found " + fields.size() + ".");
+			}
+			final int idIndex = columns.indexOf("id");
+			return new ProductImportDto(
+					idIndex >= 0 ? parseLong(fields.get(idIndex)) : null,
+					fields.get(columns.indexOf("displayName")),
+					fields.get(columns.indexOf("displayDescription")),
+					fields.get(columns.indexOf("displayUnit")),
+					parseLong(fields.get(columns.indexOf("currentPrice")))
+			);
+		});
+	}
+
 	@GetMapping(value = "/{productId}", produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull ProductDto get(@PathVariable("productId") long productId) {
-		return productRepository.getReferenceById(productId).toDto();
+	public @Nullable ProductDto get(@Nonnull WebRequest webRequest, @PathVariable("productId") long productId) {
+		final ProductRepository.ProductRevision revision = productRepository.findRevisionById(productId)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+		// the client already has this revision, nothing else to load
+		if (ETags.checkNotModified(webRequest, ETags.of(productId, revision.getVersion()),
+				ETags.lastModified(revision.getUpdatedAt()))) {
+			return null;
+		}
+		return productRepository.findProjectedById(productId, Product.PROJECTION)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 	}
 
 	@PutMapping(value = "/{productId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
 	public @Nonnull ProductDto update(@PathVariable("productId") long productId, @RequestBody @NotNull @Valid ProductUpdateDto dto) {
 		final Product product = productRepository.getReferenceById(productId);
+		// the update is also conditional on the version that was just read, see OptimisticLockingFailureHandler
+		if (dto.version() != null && !dto.version().equals(product.getVersion())) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT, "Product was modified concurrently.");
+		}
 		if (dto.displayName() != null) product.setDisplayName(dto.displayName());
 		if (dto.displayDescription() != null) product.setDisplayDescription(dto.displayDescription());
 		if (dto.displayUnit() != null) product.setDisplayUnit(dto.displayUnit());
@@ -102,15 +213,181 @@ public record ProductsController(
 			@Nullable @DisplayString String displayName,
 			@Nullable @DisplayString String displayDescription,
 			@Nullable @DisplayString String displayUnit,
-			@Nullable @Min(0) Long currentPrice
+			@Nullable @Min(0) Long currentPrice,
+			@Nullable Long version
+	) {
+	}
+
+	/**
+	 * One imported product: without an id a new product is created, with an id the existing product is replaced.
+	 */
+	public record ProductImportDto(
+			@Nullable Long id,
+			@NotNull @DisplayString String displayName,
+			@NotNull @DisplayString String displayDescription,
+			@NotNull @DisplayString String displayUnit,
+			@NotNull @Min(0) Long currentPrice
+	) {
+	}
+
+	/**
+	 * @param line Line number in the request body, starting from 1.
+	 * @param message What is wrong with the row.
+	 */
+	public record ProductImportErrorDto(
+			long line,
+			@Nonnull String message
+	) {
+	}
+
+	/**
+	 * @param rows Number of non-blank rows read.
+	 * @param created Number of products created.
+	 * @param updated Number of products updated.
+	 * @param failed Number of rows not imported.
+	 * @param errors Why rows were not imported, only the first ones if there are too many.
+	 */
+	public record ProductImportResultDto(
+			long rows,
+			long created,
+			long updated,
+			long failed,
+			@Nonnull List<ProductImportErrorDto> errors
 	) {
 	}
 
 	//endregion DTO
 
+	//region Import
+
+	@FunctionalInterface
+	private interface ProductImportParser {
+		@Nonnull ProductImportDto parse(@Nonnull String line) throws IOException;
+	}
+
+	private record ProductImportRow(long line, @Nonnull ProductImportDto dto) {
+	}
+
+	/**
+	 * Accumulates the outcome of an import. Only the counters grow with the input, the error list is bounded.
+	 */
+	private static final class ProductImportReport {
+		private final @Nonnull List<ProductImportErrorDto> errors = new ArrayList<>();
+		private long rows;
+		private long created;
+		private long updated;
+		private long failed;
+
+		private void fail(long line, @Nonnull String message) {
+			this.failed += 1;
+			if (errors.size() < IMPORT_MAXIMUM_ERRORS) errors.add(new ProductImportErrorDto(line, message));
+		}
+
+		private @Nonnull ProductImportResultDto toDto() {
+			return new ProductImportResultDto(rows, created, updated, failed, List.copyOf(errors));
+		}
+	}
+
+	/**
+	 * Read, validate and import the rows in chunks of {@value #IMPORT_CHUNK_SIZE}, each chunk in its own transaction.
+	 * The persistence context is cleared after every chunk, so memory use does not depend on the size of the input.
+	 */
+	private @Nonnull ProductImportResultDto importRows(@Nonnull BufferedReader reader, long skippedLines,
+			@Nonnull ProductImportParser parser) throws IOException {
+		final long startTime = System.nanoTime();
+		final ProductImportReport report = new ProductImportReport();
+		final List<ProductImportRow> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+		long line = skippedLines;
+		for (String text = reader.readLine(); text != null; text = reader.readLine()) {
+			line += 1;
+			if (text.isBlank()) continue;
+			report.rows += 1;
+			final ProductImportDto dto;
+			try {
+				dto = parser.parse(text);
+			} catch (IOException | RuntimeException exception) {
+				report.fail(line, "Malformed row: " + exception.getMessage());
+				continue;
+			}
+			final Set<ConstraintViolation<ProductImportDto>> violations = validator.validate(dto);
+			if (!violations.isEmpty()) {
+				report.fail(line, violations.stream()
+						.map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+						.sorted()
+						.collect(Collectors.joining("; ")));
+				continue;
+			}
+			chunk.add(new ProductImportRow(line, dto));
+			if (chunk.size() >= IMPORT_CHUNK_SIZE) {
+				importChunk(chunk, report);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) importChunk(chunk, report);
+		final long elapsedNanos = Math.max(System.nanoTime() - startTime, 1);
+		LOGGER.info("Imported {} product rows in {} ms ({} rows/s): {} created, {} updated, {} failed",
+				report.rows, elapsedNanos / 1_000_000, report.rows * 1_000_000_000 / elapsedNanos,
+				report.created, report.updated, report.failed);
+		return report.toDto();
+	}
+
+	private void importChunk(@Nonnull List<ProductImportRow> rows, @Nonnull ProductImportReport report) {
+		final List<ProductImportErrorDto> notFound = new ArrayList<>();
+		try {
+			final long[] counts = transactionTemplate.execute(status -> {
+				final Set<Long> ids = new HashSet<>();
+				for (final ProductImportRow row : rows) if (row.dto().id() != null) ids.add(row.dto().id());
+				final Map<Long, Product> existingProducts = new HashMap<>();
+				for (final Product product : productRepository.findAllById(ids)) {
+					existingProducts.put(product.getId(), product);
+				}
+				final List<Product> newProducts = new ArrayList<>();
+				long updated = 0;
+				for (final ProductImportRow row : rows) {
+					final ProductImportDto dto = row.dto();
+					final Product product;
+					if (dto.id() == null) {
+						product = new Product().setDeleted(false);
+						newProducts.add(product);
+					} else {
+						product = existingProducts.get(dto.id());
+						if (product == null) {
+							notFound.add(new ProductImportErrorDto(row.line(), "Product " + dto.id() + " not found."));
+							continue;
+						}
+						updated += 1;
+					}
+					product.setDisplayName(dto.displayName())
+							.setDisplayDescription(dto.displayDescription())
+							.setDisplayUnit(dto.displayUnit())
+							.setCurrentPrice(dto.currentPrice());
+				}
+				// existing products are flushed by dirty checking, new ones are inserted in batches
+				productRepository.saveAll(newProducts);
+				return new long[]{newProducts.size(), updated};
+			});
+			report.created += Objects.requireNonNull(counts)[0];
+			report.updated += counts[1];
+			for (final ProductImportErrorDto error : notFound) report.fail(error.line(), error.message());
+		} catch (RuntimeException exception) {
+			// the whole chunk was rolled back
+			LOGGER.warn("Failed to import products", exception);
+			for (final ProductImportRow row : rows) report.fail(row.line(), "Not imported: " + exception.getMessage());
+		} finally {
+			entityManager.clear();
+		}
+	}
+
+	private static @Nullable Long parseLong(@Nonnull String text) {
+		final String trimmed = text.trim();
+		return trimmed.isEmpty() ? null : Long.valueOf(trimmed);
+	}
+
+	//endregion Import
+
 	//region Specification
 
-	private record ProductListSpecification(
+	record ProductListSpecification(
 			@Nullable @DisplayString String displayName,
 			@Nullable @DisplayString String displayDescription,
 			@Nullable @DisplayString String displayUnit,
@@ -128,13 +405,16 @@ public record ProductsController(
 				@Nonnull CriteriaBuilder builder) {
 			final List<Predicate> predicates = new ArrayList<>();
 			if (displayName != null) {
-				predicates.add(builder.like(productRoot.get("displayName"), '%' + displayName + '%'));
+				predicates.add(FullTextIndex.match(builder, productRoot, FullTextIndex.PRODUCTS,
+						"display_name", "displayName", displayName));
 			}
 			if (displayDescription != null) {
-				predicates.add(builder.like(productRoot.get("displayDescription"), '%' + displayDescription + '%'));
+				predicates.add(FullTextIndex.match(builder, productRoot, FullTextIndex.PRODUCTS,
+						"display_description", "displayDescription", displayDescription));
 			}
 			if (displayUnit != null) {
-				predicates.add(builder.like(productRoot.get("displayUnit"), '%' + displayUnit + '%'));
+				predicates.add(FullTextIndex.match(builder, productRoot, FullTextIndex.PRODUCTS,
+						"display_unit", "displayUnit", displayUnit));
 			}
 			if (minimumPrice != null) {
 				predicates.add(builder.greaterThanOrEqualTo(productRoot.get("currentPrice"), minimumPrice));
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Number of SQL statements a handler method, or every handler method of a controller, may run per request, instead of
+ * the default budget. See {@link SqlBudgetInterceptor}.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SqlBudget {
+	/**
+	 * @return Maximum number of statements, {@link Integer#MAX_VALUE} for handlers whose statement count grows with
+	 * the request body by design.
+	 */
+	int value();
+}
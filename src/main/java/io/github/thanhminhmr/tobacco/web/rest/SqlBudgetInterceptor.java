@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.presistence.statement.SqlStatementCounter;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Counts the SQL statements run by each request, from the handler to the end of the response body, and logs the
+ * requests that go over the budget of their handler: a statement count growing with the size of the result is
+ * usually a lazy association loaded one row at a time. In failing mode, meant for tests, the statement over the
+ * budget throws instead, so the request fails.
+ */
+public final class SqlBudgetInterceptor implements AsyncHandlerInterceptor {
+	private static final @Nonnull Logger LOGGER = LoggerFactory.getLogger(SqlBudgetInterceptor.class);
+	private static final @Nonnull String SCOPE_ATTRIBUTE = SqlBudgetInterceptor.class.getName() + ".scope";
+
+	private final int defaultBudget;
+	private final boolean failing;
+
+	public SqlBudgetInterceptor(int defaultBudget, boolean failing) {
+		this.defaultBudget = defaultBudget;
+		this.failing = failing;
+	}
+
+	@Override
+	public boolean preHandle(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response,
+			@Nonnull Object handler) {
+		if (handler instanceof HandlerMethod handlerMethod) {
+			request.setAttribute(SCOPE_ATTRIBUTE, SqlStatementCounter.open(handlerMethod.getShortLogMessage(),
+					getBudget(handlerMethod), failing));
+		}
+		return true;
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(@Nonnull HttpServletRequest request,
+			@Nonnull HttpServletResponse response, @Nonnull Object handler) {
+		// the rest of the request runs on another thread, which opens its own scope when dispatched back
+		final SqlStatementCounter.Scope scope = removeScope(request);
+		if (scope != null) scope.close();
+	}
+
+	@Override
+	public void afterCompletion(@Nonnull HttpServletRequest request, @Nonnull HttpServletResponse response,
+			@Nonnull Object handler, @Nullable Exception exception) {
+		final SqlStatementCounter.Scope scope = removeScope(request);
+		if (scope == null) return;
+		scope.close();
+		if (scope.isExceeded()) {
+			LOGGER.warn("{} ran {} SQL statements, over its budget of {}, the first ones were: {}",
+					scope.getDescription(), scope.getCount(), scope.getBudget(), scope.getStatements());
+		} else {
+			LOGGER.debug("{} ran {} SQL statements", scope.getDescription(), scope.getCount());
+		}
+	}
+
+	private int getBudget(@Nonnull HandlerMethod handlerMethod) {
+		final SqlBudget methodBudget = handlerMethod.getMethodAnnotation(SqlBudget.class);
+		if (methodBudget != null) return methodBudget.value();
+		final SqlBudget typeBudget = handlerMethod.getBeanType().getAnnotation(SqlBudget.class);
+		return typeBudget != null ? typeBudget.value() : defaultBudget;
+	}
+
+	private static @Nullable SqlStatementCounter.Scope removeScope(@Nonnull HttpServletRequest request) {
+		final Object scope = request.getAttribute(SCOPE_ATTRIBUTE);
+		request.removeAttribute(SCOPE_ATTRIBUTE);
+		return scope instanceof SqlStatementCounter.Scope counterScope ? counterScope : null;
+	}
+}
@@ -5,14 +5,21 @@
 package io.github.thanhminhmr.tobacco.web.rest;
 
 import io.github.thanhminhmr.tobacco.dto.model.UserDto;
+import io.github.thanhminhmr.tobacco.dto.rest.CursorPageDto;
+import io.github.thanhminhmr.tobacco.dto.rest.KeysetCursor;
+import io.github.thanhminhmr.tobacco.dto.rest.ListDto;
 import io.github.thanhminhmr.tobacco.dto.rest.PageDto;
+import io.github.thanhminhmr.tobacco.dto.rest.SliceDto;
 import io.github.thanhminhmr.tobacco.dto.validation.DisplayString;
 import io.github.thanhminhmr.tobacco.dto.validation.UsernameString;
 import io.github.thanhminhmr.tobacco.presistence.model.Authority;
-import io.github.thanhminhmr.tobacco.presistence.model.EntityMarker;
 import io.github.thanhminhmr.tobacco.presistence.model.Group;
 import io.github.thanhminhmr.tobacco.presistence.model.User;
+import io.github.thanhminhmr.tobacco.presistence.repository.CountEstimator;
+import io.github.thanhminhmr.tobacco.presistence.repository.Keyset;
 import io.github.thanhminhmr.tobacco.presistence.repository.UserRepository;
+import io.github.thanhminhmr.tobacco.security.PrincipalCache;
+import io.github.thanhminhmr.tobacco.security.TokenService;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import jakarta.persistence.criteria.CriteriaBuilder;
@@ -42,10 +49,13 @@ import java.util.concurrent.ThreadLocalRandom;
 @RequestMapping("/api/users")
 public record UsersController(
 		@Nonnull PasswordEncoder passwordEncoder,
-		@Nonnull UserRepository userRepository
+		@Nonnull UserRepository userRepository,
+		@Nonnull PrincipalCache principalCache,
+		@Nonnull TokenService tokenService,
+		@Nonnull CountEstimator countEstimator
 ) {
 	@GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-	public @Nonnull PageDto<UserDto> list(
+	public @Nonnull ListDto<UserDto> list(
 			@RequestParam(value = "displayName", required = false) @Nullable @DisplayString String displayName,
 			@RequestParam(value = "authority", required = false) @Nullable Authority authority,
 			@RequestParam(value = "groupId", required = false) @Nullable Long groupId,
@@ -54,13 +64,34 @@ public record UsersController(
 			@RequestParam(value = "createdAfter", required = false) @Nullable Instant createdAfter,
 			@RequestParam(value = "updatedBefore", required = false) @Nullable Instant updatedBefore,
 			@RequestParam(value = "updatedAfter", required = false) @Nullable Instant updatedAfter,
+			@RequestParam(value = "after", required = false) @Nullable String after,
+			@RequestParam(value = "withTotal", defaultValue = "true") boolean withTotal,
+			@RequestParam(value = "estimatedTotal", defaultValue = "false") boolean estimatedTotal,
 			@RequestParam(value = "pageNumber", defaultValue = "0") @Min(0) int pageNumber,
 			@RequestParam(value = "pageSize", defaultValue = "20") @Min(1) @Max(100) int pageSize) {
-		return EntityMarker.toPageDto(userRepository.findAll(
-				new UserListSpecification(displayName, authority, groupId, deleted,
-						createdBefore, createdAfter, updatedBefore, updatedAfter),
-				PageRequest.of(pageNumber, pageSize)
-		));
+		final UserListSpecification specification = new UserListSpecification(displayName, authority, groupId, deleted,
+				createdBefore, createdAfter, updatedBefore, updatedAfter);
+		if (after != null) {
+			// cursor mode, an empty cursor means the first page
+			return CursorPageDto.of(userRepository.findProjectedSlice(
+					Keyset.after(specification, KeysetCursor.decode(after)),
+					Keyset.pageRequest(pageSize),
+					User.PROJECTION
+			));
+		}
+		if (!withTotal) {
+			// slice mode, no count query at all
+			return SliceDto.of(userRepository.findProjectedSlice(specification, PageRequest.of(pageNumber, pageSize),
+					User.PROJECTION));
+		}
+		if (estimatedTotal) {
+			// approximate number of pages from a cached count
+			return PageDto.of(userRepository.findProjectedSlice(specification, PageRequest.of(pageNumber, pageSize),
+					User.PROJECTION),
+					countEstimator.estimate(userRepository, specification));
+		}
+		return PageDto.of(userRepository.findProjectedPage(specification, PageRequest.of(pageNumber, pageSize),
+				User.PROJECTION));
 	}
 
 	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -85,7 +116,8 @@ public record UsersController(
 
 	@GetMapping(value = "/{userId}", produces = MediaType.APPLICATION_JSON_VALUE)
 	public @Nonnull UserDto get(@PathVariable("userId") long userId) {
-		return userRepository.getReferenceById(userId).toDto();
+		return userRepository.findProjectedById(userId, User.PROJECTION)
+				.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 	}
 
 	@PutMapping(value = "/{userId}", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -93,7 +125,11 @@ public record UsersController(
 		final User user = userRepository.getReferenceById(userId);
 		if (dto.displayName() != null) user.setDisplayName(dto.displayName());
 		if (dto.authorities() != null) user.setAuthorities(dto.authorities());
-		return userRepository.save(user).toDto();
+		final UserDto userDto = userRepository.save(user).toDto();
+		principalCache.removeUserFromCache(user.getUsername());
+		// tokens carry the authorities, so they need to be reissued
+		if (dto.authorities() != null) tokenService.revoke(userId);
+		return userDto;
 	}
 
 	@DeleteMapping(value = "/{userId}")
@@ -101,6 +137,8 @@ public record UsersController(
 		final User user = userRepository.getReferenceById(userId);
 		user.setDeleted(true);
 		userRepository.save(user);
+		principalCache.removeUserFromCache(user.getUsername());
+		tokenService.revoke(userId);
 	}
 
 	//region DTO
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.presistence.statement;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Asserts how many SQL statements a piece of code runs, e.g. a controller method called directly:
+ * <pre>{@code
+ * final ListDto<InvoiceDto> page = SqlStatementAssertions.assertStatementCount(2, () -> invoicesController.list(...));
+ * }</pre>
+ * Requests going through the dispatcher servlet (e.g. MockMvc) are already counted by the {@code SqlBudgetInterceptor},
+ * run them with {@code tobacco.sql-budget.fail=true} to fail the ones over budget.
+ */
+public final class SqlStatementAssertions {
+	private SqlStatementAssertions() {
+	}
+
+	/**
+	 * @param maximum Maximum number of statements.
+	 * @param action Code to run.
+	 * @return What the code returned.
+	 * @throws AssertionError If the code ran more statements.
+	 */
+	public static <T> T assertStatementCount(int maximum, @Nonnull Supplier<T> action) {
+		return assertStatementCount(action, count -> count <= maximum, "at most " + maximum);
+	}
+
+	/**
+	 * @param maximum Maximum number of statements.
+	 * @param action Code to run.
+	 * @throws AssertionError If the code ran more statements.
+	 */
+	public static void assertStatementCount(int maximum, @Nonnull Runnable action) {
+		assertStatementCount(maximum, () -> {
+			action.run();
+			return null;
+		});
+	}
+
+	/**
+	 * @param expected Number of statements.
+	 * @param action Code to run.
+	 * @return What the code returned.
+	 * @throws AssertionError If the code ran another number of statements.
+	 */
+	public static <T> T assertExactStatementCount(int expected, @Nonnull Supplier<T> action) {
+		return assertStatementCount(action, count -> count == expected, "exactly " + expected);
+	}
+
+	private static <T> T assertStatementCount(@Nonnull Supplier<T> action, @Nonnull IntPredicate expected,
+			@Nonnull String expectation) {
+		final T result;
+		final SqlStatementCounter.Scope scope = SqlStatementCounter.open();
+		try (scope) {
+			result = action.get();
+		}
+		if (!expected.test(scope.getCount())) {
+			throw new AssertionError("Expected " + expectation + " SQL statements, but " + scope.getCount()
+					+ " were run: " + String.join("\n", scope.getStatements()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.dto.model.InvoiceDto;
+import io.github.thanhminhmr.tobacco.dto.model.InvoiceItemDto;
+import io.github.thanhminhmr.tobacco.dto.rest.ListDto;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+
+import static io.github.thanhminhmr.tobacco.presistence.statement.SqlStatementAssertions.assertExactStatementCount;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The number of SQL statements behind the invoice list and the invoice items does not grow with the number of rows:
+ * authors and products are selected in the same query as the invoices and the items.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class InvoicesControllerStatementCountTest {
+	@Autowired
+	private ApplicationContext context;
+	@Autowired
+	private InvoicesController invoicesController;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	private TestFixture fixture;
+	private Authentication accountant;
+
+	@BeforeAll
+	void seed() {
+		fixture = TestFixture.of(context);
+		accountant = TestFixture.authentication(fixture.accountant());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {5, 20, 100})
+	void listSliceRunsOneStatement(int pageSize) {
+		final ListDto<InvoiceDto> page = assertExactStatementCount(1, () -> list(false, null, pageSize));
+		assertEquals(pageSize, page.elements().size());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {5, 20, 100})
+	void listPageRunsTwoStatements(int pageSize) {
+		// the rows and the count
+		final ListDto<InvoiceDto> page = assertExactStatementCount(2, () -> list(true, null, pageSize));
+		assertEquals(pageSize, page.elements().size());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {5, 20, 100})
+	void listCursorRunsOneStatement(int pageSize) {
+		final ListDto<InvoiceDto> page = assertExactStatementCount(1, () -> list(false, "", pageSize));
+		assertEquals(pageSize, page.elements().size());
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 10, 50})
+	void getItemsRunsThreeStatements(int itemCount) {
+		final long invoiceId = fixture.invoiceIdsByItemCount().get(itemCount);
+		// the author of the invoice, the revision of its items, and the items with their products
+		// in a transaction, as a request keeps its session open until the response is written
+		final List<InvoiceItemDto> items = assertExactStatementCount(3, () -> transactionTemplate.execute(
+				status -> invoicesController.getItems(accountant, TestFixture.newWebRequest(), invoiceId)));
+		assertEquals(itemCount, Objects.requireNonNull(items).size());
+	}
+
+	private @Nonnull ListDto<InvoiceDto> list(boolean withTotal, @Nullable String after, int pageSize) {
+		return invoicesController.list(accountant, TestFixture.newWebRequest(), null, null, null, null, null, null,
+				null, null, null, null, null, null, Sort.Direction.ASC, after, withTotal, false, 0, pageSize);
+	}
+}
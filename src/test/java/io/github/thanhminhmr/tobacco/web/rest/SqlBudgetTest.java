@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.dto.rest.ListDto;
+import io.github.thanhminhmr.tobacco.presistence.model.User;
+import jakarta.annotation.Nonnull;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.stream.Collectors;
+
+import static io.github.thanhminhmr.tobacco.presistence.statement.SqlStatementAssertions.assertExactStatementCount;
+import static io.github.thanhminhmr.tobacco.presistence.statement.SqlStatementAssertions.assertStatementCount;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Full pages of every list endpoint and the invoice endpoints, through the dispatcher servlet with the SQL budget in
+ * failing mode: a request running more statements than its budget throws out of {@link MockMvc#perform}. The list
+ * methods are also called directly, with their exact statement counts.
+ */
+@SpringBootTest(properties = "tobacco.sql-budget.fail=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SqlBudgetTest {
+	@Autowired
+	private ApplicationContext context;
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private ProductsController productsController;
+	@Autowired
+	private GroupsController groupsController;
+	@Autowired
+	private UsersController usersController;
+
+	private TestFixture fixture;
+	private long invoiceId;
+
+	@BeforeAll
+	void seed() {
+		fixture = TestFixture.of(context);
+		invoiceId = fixture.commentedInvoiceId();
+	}
+
+	//region MockMvc
+
+	@ParameterizedTest
+	@ValueSource(strings = {"/api/invoices", "/api/products", "/api/groups", "/api/users"})
+	void listPageIsWithinBudget(@Nonnull String path) throws Exception {
+		perform(get(path).param("pageSize", "100"), fixture.superAdmin());
+		perform(get(path).param("pageSize", "100").param("withTotal", "false"), fixture.superAdmin());
+		perform(get(path).param("pageSize", "100").param("after", ""), fixture.superAdmin());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"items", "comments"})
+	void invoiceChildrenAreWithinBudget(@Nonnull String children) throws Exception {
+		perform(get("/api/invoices/{invoiceId}/" + children, invoiceId), fixture.accountant());
+	}
+
+	@Test
+	void invoiceIsWithinBudget() throws Exception {
+		perform(get("/api/invoices/{invoiceId}", invoiceId), fixture.accountant());
+		perform(get("/api/account"), fixture.accountant());
+	}
+
+	@Test
+	void createInvoiceIsWithinBudget() throws Exception {
+		perform(post("/api/invoices")
+				.with(csrf())
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"displayDescription\":\"SQL budget create\"}"), fixture.salesman());
+	}
+
+	@Test
+	void createCompositeInvoiceIsWithinBudget() throws Exception {
+		final String items = fixture.productIds().stream()
+				.map(productId -> "{\"productId\":" + productId + ",\"quantity\":1}")
+				.collect(Collectors.joining(","));
+		perform(post("/api/invoices/composite")
+				.with(csrf())
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"displayDescription\":\"SQL budget composite\",\"items\":[" + items + "],"
+						+ "\"displayComment\":\"SQL budget comment\"}"), fixture.salesman());
+	}
+
+	private void perform(@Nonnull MockHttpServletRequestBuilder request, @Nonnull User principal) throws Exception {
+		mockMvc.perform(request.with(user(principal))).andExpect(status().isOk());
+	}
+
+	//endregion MockMvc
+
+	//region SqlStatementAssertions
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void productListRunsFixedStatements(boolean withTotal) {
+		// the rows, and the count with the total
+		final ListDto<?> page = assertExactStatementCount(withTotal ? 2 : 1, () -> productsController.list(
+				TestFixture.newWebRequest(), null, null, null, null, null, null, null, null, null, null, null, withTotal,
+				false, 0, 100));
+		assertEquals(100, page.elements().size());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void groupListRunsFixedStatements(boolean withTotal) {
+		final ListDto<?> page = assertExactStatementCount(withTotal ? 2 : 1, () -> groupsController.list(null, null,
+				null, null, null, null, null, null, withTotal, false, 0, 100));
+		assertEquals(100, page.elements().size());
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void userListRunsFixedStatements(boolean withTotal) {
+		final ListDto<?> page = assertExactStatementCount(withTotal ? 2 : 1, () -> usersController.list(null, null,
+				null, null, null, null, null, null, null, withTotal, false, 0, 100));
+		assertEquals(100, page.elements().size());
+	}
+
+	@Test
+	void overBudgetFails() {
+		assertThrows(AssertionError.class, () -> assertStatementCount(0, () -> groupsController.list(null, null,
+				null, null, null, null, null, null, false, false, 0, 100)));
+	}
+
+	//endregion SqlStatementAssertions
+}
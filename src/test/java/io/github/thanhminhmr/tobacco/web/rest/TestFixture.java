@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2023 Mai Thanh Minh (a.k.a. thanhminhmr). All rights reserved.
+ */
+
+package io.github.thanhminhmr.tobacco.web.rest;
+
+import io.github.thanhminhmr.tobacco.presistence.model.*;
+import io.github.thanhminhmr.tobacco.presistence.repository.GroupRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceCommentRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.InvoiceRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.ProductRepository;
+import io.github.thanhminhmr.tobacco.presistence.repository.UserRepository;
+import jakarta.annotation.Nonnull;
+import org.springframework.context.ApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The rows the controller tests run against, seeded once per application context. There are more rows of every kind
+ * than the largest page, every invoice has its own author, every group has members and the comments of an invoice
+ * have different users, so that a lazily loaded association would be one more statement per row.
+ *
+ * @param superAdmin A user who can see every list.
+ * @param accountant A user who can see every invoice.
+ * @param salesman A user who can create invoices, and is the author of none.
+ * @param productIds The ids of the products.
+ * @param invoiceIdsByItemCount The ids of the invoices with items, by their number of items.
+ */
+record TestFixture(
+		@Nonnull User superAdmin,
+		@Nonnull User accountant,
+		@Nonnull User salesman,
+		@Nonnull List<Long> productIds,
+		@Nonnull Map<Integer, Long> invoiceIdsByItemCount
+) {
+	static final int ROWS = 120;
+	/** The numbers of items of the first invoices, the other invoices have none. */
+	static final List<Integer> ITEM_COUNTS = List.of(1, 10, 50);
+	/** The number of comments of the invoice with the most items, the other invoices have none. */
+	static final int COMMENT_COUNT = 30;
+
+	private static final Map<ApplicationContext, TestFixture> FIXTURES = new ConcurrentHashMap<>();
+
+	static @Nonnull TestFixture of(@Nonnull ApplicationContext context) {
+		return FIXTURES.computeIfAbsent(context, TestFixture::seed);
+	}
+
+	private static @Nonnull TestFixture seed(@Nonnull ApplicationContext context) {
+		final UserRepository userRepository = context.getBean(UserRepository.class);
+		final GroupRepository groupRepository = context.getBean(GroupRepository.class);
+		final ProductRepository productRepository = context.getBean(ProductRepository.class);
+		final InvoiceRepository invoiceRepository = context.getBean(InvoiceRepository.class);
+		final InvoiceCommentRepository invoiceCommentRepository = context.getBean(InvoiceCommentRepository.class);
+		return Objects.requireNonNull(context.getBean(TransactionTemplate.class).execute(status -> {
+			final User superAdmin = userRepository.save(newUser("fixtureSuperAdmin", Authority.SUPER_ADMIN));
+			final User accountant = userRepository.save(newUser("fixtureAccountant", Authority.USER_ACCOUNTANT));
+			final User salesman = userRepository.save(newUser("fixtureSalesman", Authority.USER_SALESMAN));
+			final List<User> authors = new ArrayList<>();
+			for (int index = 0; index < ROWS; index++) {
+				authors.add(userRepository.save(newUser("fixtureAuthor" + index, Authority.USER_SALESMAN)));
+			}
+			for (int index = 0; index < ROWS; index++) {
+				groupRepository.save(new Group()
+						.setDisplayName("Fixture group " + index)
+						.setUsers(Set.of(authors.get(index), authors.get((index + 1) % ROWS)))
+						.setDeleted(false));
+			}
+			final List<Product> products = new ArrayList<>();
+			for (int index = 0; index < ROWS; index++) {
+				products.add(productRepository.save(new Product()
+						.setDisplayName("Product " + index)
+						.setDisplayDescription("Fixture product " + index)
+						.setDisplayUnit("unit")
+						.setCurrentPrice(1000L + index)
+						.setDeleted(false)));
+			}
+			final Map<Integer, Long> invoiceIdsByItemCount = new HashMap<>();
+			for (int index = 0; index < ROWS; index++) {
+				// every item of an invoice has its own product
+				final int itemCount = index < ITEM_COUNTS.size() ? ITEM_COUNTS.get(index) : 0;
+				final Invoice invoice = new Invoice()
+						.setAuthor(authors.get(index))
+						.setDisplayDescription("Fixture invoice " + index)
+						.setStatus(InvoiceStatus.CREATED)
+						.setItemCount((long) itemCount)
+						.setTotalAmount(0L)
+						.setDeleted(false);
+				final List<InvoiceItem> items = new ArrayList<>(itemCount);
+				for (int item = 0; item < itemCount; item++) {
+					items.add(new InvoiceItem()
+							.setInvoice(invoice)
+							.setProduct(products.get(item))
+							.setQuantity(1L)
+							.setUnitPrice(0L)
+							.setDeleted(false));
+				}
+				invoice.setItems(items);
+				final long invoiceId = invoiceRepository.save(invoice).getId();
+				if (itemCount > 0) invoiceIdsByItemCount.put(itemCount, invoiceId);
+			}
+			final Invoice commented = invoiceRepository.getReferenceById(
+					invoiceIdsByItemCount.get(ITEM_COUNTS.get(ITEM_COUNTS.size() - 1)));
+			for (int index = 0; index < COMMENT_COUNT; index++) {
+				invoiceCommentRepository.save(new InvoiceComment()
+						.setInvoice(commented)
+						.setUser(authors.get(index))
+						.setDisplayComment("Fixture comment " + index)
+						.setStatusBefore(InvoiceStatus.CREATED)
+						.setStatusAfter(InvoiceStatus.CREATED)
+						.setDeleted(false));
+			}
+			return new TestFixture(superAdmin, accountant, salesman,
+					products.stream().map(Product::getId).toList(), Map.copyOf(invoiceIdsByItemCount));
+		}));
+	}
+
+	/** The invoice with the most items, the only one with comments. */
+	long commentedInvoiceId() {
+		return invoiceIdsByItemCount.get(ITEM_COUNTS.get(ITEM_COUNTS.size() - 1));
+	}
+
+	static @Nonnull Authentication authentication(@Nonnull User user) {
+		return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+	}
+
+	/** A request without conditional headers, for the methods answering conditional GETs. */
+	static @Nonnull WebRequest newWebRequest() {
+		return new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
+	}
+
+	static @Nonnull User newUser(@Nonnull String username, @Nonnull Authority authority) {
+		return new User()
+				.setUsername(username)
+				.setPassword("{noop}password")
+				.setDisplayName(username)
+				.setAuthorities(Set.of(authority))
+				.setDeleted(false);
+	}
+}